@@ -40,4 +40,13 @@ public @interface Distribute {
 	 */
 	String name() default "";
 
+	/**
+	 * Whether tasks sharing a JVM (JVM reuse or uber mode) also share a single
+	 * decoded instance of this resource, rather than decoding it for each task.
+	 * Only applies to values encoded onto the distributed cache, and the shared
+	 * instance must be treated as read-only.
+	 * @return <code>true</code> to share the decoded instance within the JVM.
+	 */
+	boolean shared() default false;
+
 }
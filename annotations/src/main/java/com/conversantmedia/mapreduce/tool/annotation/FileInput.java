@@ -51,4 +51,23 @@ public @interface FileInput {
 	 */
 	String path() default "${context.input}";
 
+	/**
+	 * Pack combined input splits toward a uniform size, preferring node- then
+	 * rack-local groups of files. Honored by the Mara combine file input formats.
+	 * @return	<code>true</code> to enable split packing
+	 */
+	boolean packSplits() default false;
+
+	/**
+	 * Target size in bytes of packed splits. Defaults to the job's maximum split size.
+	 * @return	the target split size
+	 */
+	long splitSize() default 0;
+
+	/**
+	 * Maximum number of files (or blocks) in a packed split.
+	 * @return	the maximum file count
+	 */
+	int maxFilesPerSplit() default 0;
+
 }
@@ -40,4 +40,11 @@ public @interface Grouping {
 
 	@SuppressWarnings("rawtypes")
 	Class<? extends RawComparator> value() default NULLCOMPARATOR.class;
+
+	/**
+	 * Number of leading {@link Sorter#fields()} of a multi-field
+	 * map output key used for partitioning and grouping.
+	 * @return	the group field count, or zero to use the default of one
+	 */
+	int fieldCount() default 0;
 }
@@ -39,4 +39,44 @@ public @interface Partitioner {
 	@SuppressWarnings("rawtypes")
 	Class<? extends org.apache.hadoop.mapreduce.Partitioner> value()
 		default NULLPARTITIONER.class;
+
+	/**
+	 * Report the number of records received by each reduce
+	 * partition as job counters.
+	 * @return	<code>true</code> to report partition sizes
+	 */
+	boolean skewReport() default false;
+
+	/**
+	 * Partition <code>CompositeSortKey</code> group keys by range so reducer
+	 * outputs are in total order. Split points are sampled from the map output
+	 * before the job is launched.
+	 * @return	<code>true</code> to use total order partitioning
+	 */
+	boolean totalOrder() default false;
+
+	/**
+	 * Spread the records of hot <code>CompositeSortKey</code> group keys,
+	 * sampled from the map output before the job is launched, across
+	 * several reducers. Also reports partition sizes as with {@link #skewReport()}.
+	 * Cannot be combined with {@link #totalOrder()}.
+	 * @return	<code>true</code> to use skew-aware partitioning
+	 */
+	boolean skewAware() default false;
+
+	/**
+	 * Reducer merging the partial results that {@link #skewAware()} partitioning
+	 * produces for hot keys, run over the job's output by a follow-up job.
+	 * @return	the merge reducer, or <code>Reducer</code> for none
+	 */
+	@SuppressWarnings("rawtypes")
+	Class<? extends org.apache.hadoop.mapreduce.Reducer> merge()
+		default org.apache.hadoop.mapreduce.Reducer.class;
+
+	/**
+	 * Number of map output keys sampled for {@link #totalOrder()}
+	 * or {@link #skewAware()}.
+	 * @return	the sample size
+	 */
+	int samples() default 10000;
 }
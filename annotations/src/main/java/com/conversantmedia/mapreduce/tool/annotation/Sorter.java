@@ -29,6 +29,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparable;
 
 import com.conversantmedia.mapreduce.tool.annotation.JobInfo.NULLCOMPARATOR;
 
@@ -40,4 +41,19 @@ public @interface Sorter {
 
 	@SuppressWarnings("rawtypes")
 	Class<? extends RawComparator> value() default NULLCOMPARATOR.class;
+
+	/**
+	 * Field types of a multi-field map output key, in sort precedence.
+	 * Configures the job to use <code>MultiFieldSortKey</code>.
+	 * @return	the key field types
+	 */
+	@SuppressWarnings("rawtypes")
+	Class<? extends WritableComparable>[] fields() default {};
+
+	/**
+	 * Sort order of each of the {@link #fields()}. Fields
+	 * without an entry sort ascending.
+	 * @return	<code>true</code> for each field sorted descending
+	 */
+	boolean[] descending() default {};
 }
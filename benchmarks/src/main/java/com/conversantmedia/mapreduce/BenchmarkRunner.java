@@ -0,0 +1,84 @@
+package com.conversantmedia.mapreduce;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the usual JMH command line
+ * (<code>java -jar benchmarks.jar [regexp] [options]</code>, see <code>-h</code>)
+ * and always attaches the GC profiler, so every result reports the allocation
+ * rate (<code>gc.alloc.rate</code>) and bytes allocated per operation
+ * (<code>gc.alloc.rate.norm</code>) next to its ops/s.
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {}
+
+	public static void main(String[] args) throws RunnerException {
+		CommandLineOptions cmdOptions;
+		try {
+			cmdOptions = new CommandLineOptions(args);
+		} catch (CommandLineOptionException e) {
+			System.err.println("Error parsing command line:");
+			System.err.println(" " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (cmdOptions.shouldHelp()) {
+			try {
+				cmdOptions.showHelp();
+			} catch (IOException e) {
+				throw new RunnerException(e);
+			}
+			return;
+		}
+		if (cmdOptions.shouldList()) {
+			new Runner(cmdOptions).list();
+			return;
+		}
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(cmdOptions);
+		if (!hasGcProfiler(cmdOptions)) {
+			options.addProfiler(GCProfiler.class);
+		}
+		new Runner(options.build()).run();
+	}
+
+	private static boolean hasGcProfiler(CommandLineOptions cmdOptions) {
+		for (ProfilerConfig profiler : cmdOptions.getProfilers()) {
+			if ("gc".equals(profiler.getKlass())
+					|| GCProfiler.class.getName().equals(profiler.getKlass())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,133 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads a local file of short lines a line at a time with
+ * {@link CombineTextFileInputFormat} and in batches with
+ * {@link CombineTextBatchInputFormat}. Each operation reads the whole file and
+ * touches every line's bytes, as a parse/filter mapper would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombineTextBatchBenchmark {
+
+	private static final int LINES = 200000;
+
+	private File dir;
+
+	private TaskAttemptContext context;
+
+	private InputSplit lineSplit;
+	private InputSplit batchSplit;
+
+	private final CombineTextFileInputFormat lineFormat = new CombineTextFileInputFormat();
+	private final CombineTextBatchInputFormat batchFormat = new CombineTextBatchInputFormat();
+
+	@Setup
+	public void setup() throws IOException, InterruptedException {
+		dir = Files.createTempDirectory("batch-benchmark").toFile();
+		Random random = new Random(42);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < LINES; i++) {
+			text.append("2015-06-01T00:00:").append(random.nextInt(60)).append('\t')
+				.append(random.nextInt(1000000)).append('\t').append("user").append(random.nextInt(100000))
+				.append("\thttp://www.example.com/page/").append(random.nextInt(1000)).append('\n');
+		}
+		FileUtils.writeByteArrayToFile(new File(dir, "part-m-00000"), text.toString().getBytes(StandardCharsets.UTF_8));
+
+		Job job = Job.getInstance();
+		FileInputFormat.addInputPath(job, new Path(dir.toURI()));
+		context = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID());
+		lineSplit = lineFormat.getSplits(job).get(0);
+		batchSplit = batchFormat.getSplits(job).get(0);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Benchmark
+	public long readLines() throws IOException, InterruptedException {
+		long sum = 0;
+		try (RecordReader<FileLineWritable, Text> reader = lineFormat.createRecordReader(lineSplit, context)) {
+			reader.initialize(lineSplit, context);
+			while (reader.nextKeyValue()) {
+				sum += reader.getCurrentKey().getOffset();
+				Text line = reader.getCurrentValue();
+				sum += line.getBytes()[line.getLength() - 1];
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long readBatches() throws IOException, InterruptedException {
+		long sum = 0;
+		try (RecordReader<FileLineWritable, LineBatch> reader = batchFormat.createRecordReader(batchSplit, context)) {
+			reader.initialize(batchSplit, context);
+			while (reader.nextKeyValue()) {
+				LineBatch batch = reader.getCurrentValue();
+				byte[] data = batch.getData();
+				for (int i = 0; i < batch.size(); i++) {
+					sum += batch.getOffset(i);
+					sum += data[batch.getStart(i) + batch.getLength(i) - 1];
+				}
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,119 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares and (de)serializes {@link FileLineWritable} keys as produced by the
+ * combine file input formats: a handful of file names, each with many line
+ * offsets. <code>compareRaw</code> goes through the comparator registered
+ * for the class (or the deserializing default if none is).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileLineWritableBenchmark {
+
+	private static final int KEY_COUNT = 1024;
+
+	private FileLineWritable[] keys;
+	private byte[][] serialized;
+
+	private int idx;
+
+	private WritableComparator comparator;
+
+	private final DataOutputBuffer out = new DataOutputBuffer();
+	private final DataInputBuffer in = new DataInputBuffer();
+	private final FileLineWritable reuse = new FileLineWritable();
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(42);
+		String[] files = new String[8];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = "hdfs://namenode:8020/data/logs/2015/06/01/part-m-" + String.format("%05d", i) + ".gz";
+		}
+		keys = new FileLineWritable[KEY_COUNT];
+		serialized = new byte[KEY_COUNT][];
+		for (int i = 0; i < KEY_COUNT; i++) {
+			keys[i] = new FileLineWritable(files[random.nextInt(files.length)],
+					(long) random.nextInt(64 * 1024 * 1024));
+			out.reset();
+			keys[i].write(out);
+			serialized[i] = Arrays.copyOf(out.getData(), out.getLength());
+		}
+		comparator = WritableComparator.get(FileLineWritable.class);
+	}
+
+	@Benchmark
+	public int compareTo() {
+		FileLineWritable k1 = keys[idx & KEY_COUNT - 1];
+		FileLineWritable k2 = keys[idx + 1 & KEY_COUNT - 1];
+		idx++;
+		return k1.compareTo(k2);
+	}
+
+	@Benchmark
+	public int compareRaw() {
+		byte[] b1 = serialized[idx & KEY_COUNT - 1];
+		byte[] b2 = serialized[idx + 1 & KEY_COUNT - 1];
+		idx++;
+		return comparator.compare(b1, 0, b1.length, b2, 0, b2.length);
+	}
+
+	@Benchmark
+	public int write() throws IOException {
+		out.reset();
+		keys[idx++ & KEY_COUNT - 1].write(out);
+		return out.getLength();
+	}
+
+	@Benchmark
+	public FileLineWritable readFields() throws IOException {
+		byte[] b = serialized[idx++ & KEY_COUNT - 1];
+		in.reset(b, b.length);
+		reuse.readFields(in);
+		return reuse;
+	}
+}
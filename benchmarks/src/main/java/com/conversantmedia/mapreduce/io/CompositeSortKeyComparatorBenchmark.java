@@ -0,0 +1,161 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.conversantmedia.mapreduce.io.CompositeSortKey.CompositeSortKeyComparator;
+import com.conversantmedia.mapreduce.io.CompositeSortKeySerialization.CompositeSortKeySerializer;
+
+/**
+ * Compares serialized {@link CompositeSortKey} instances with <code>Text</code> group
+ * and <code>LongWritable</code> sort keys, as the spill sort and merge do, in each
+ * supported layout. The
+ * <code>deserializing</code> benchmark reproduces the comparator behavior prior to
+ * raw byte comparison.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeSortKeyComparatorBenchmark {
+
+	private static final int KEY_COUNT = 1024;
+
+	@Param({"8", "32"})
+	public int groupKeyLength;
+
+	@Param({"STANDARD", "NORMALIZED"})
+	public CompositeSortKeySerialization.Layout layout;
+
+	private byte[][] keys;
+
+	private int idx;
+
+	private CompositeSortKeyComparator<Text, LongWritable> natural;
+	private CompositeSortKeyComparator<Text, LongWritable> reverse;
+	private CompositeSortKeyComparator<Text, LongWritable> grouping;
+	private CompositeSortKeyComparator<Text, LongWritable> deserializing;
+
+	@Setup @SuppressWarnings({ "rawtypes", "unchecked" })
+	public void setup() throws IOException {
+		Configuration conf = new Configuration(false);
+		conf.set(CompositeSortKeySerialization.CONF_KEY_GROUPKEY_CLASS, Text.class.getName());
+		conf.set(CompositeSortKeySerialization.CONF_KEY_SORTKEY_CLASS, LongWritable.class.getName());
+		conf.setEnum(CompositeSortKeySerialization.CONF_KEY_LAYOUT, layout);
+
+		natural = new CompositeSortKey.NaturalSortComparator<>();
+		reverse = new CompositeSortKey.ReverseSortComparator<>();
+		grouping = new CompositeSortKey.GroupingComparator<>();
+		deserializing = new DeserializingComparator();
+		natural.setConf(conf);
+		reverse.setConf(conf);
+		grouping.setConf(conf);
+		deserializing.setConf(conf);
+
+		// Few distinct groups so the sort key is frequently consulted
+		Random random = new Random(42);
+		String[] groups = new String[16];
+		for (int i = 0; i < groups.length; i++) {
+			groups[i] = randomString(random, groupKeyLength);
+		}
+		CompositeSortKeySerializer serializer = new CompositeSortKeySerializer(layout);
+		DataOutputBuffer out = new DataOutputBuffer();
+		serializer.open(out);
+		keys = new byte[KEY_COUNT][];
+		for (int i = 0; i < KEY_COUNT; i++) {
+			CompositeSortKey<Text, LongWritable> key = new CompositeSortKey<>(
+					new Text(groups[random.nextInt(groups.length)]), new LongWritable(random.nextLong()));
+			out.reset();
+			serializer.serialize(key);
+			keys[i] = Arrays.copyOf(out.getData(), out.getLength());
+		}
+	}
+
+	@Benchmark
+	public int naturalRaw() {
+		return compare(natural);
+	}
+
+	@Benchmark
+	public int reverseRaw() {
+		return compare(reverse);
+	}
+
+	@Benchmark
+	public int groupingRaw() {
+		return compare(grouping);
+	}
+
+	@Benchmark
+	public int deserializing() {
+		return compare(deserializing);
+	}
+
+	private int compare(CompositeSortKeyComparator<Text, LongWritable> comparator) {
+		byte[] b1 = keys[idx & KEY_COUNT - 1];
+		byte[] b2 = keys[idx + 1 & KEY_COUNT - 1];
+		idx++;
+		return comparator.compare(b1, 0, b1.length, b2, 0, b2.length);
+	}
+
+	private static String randomString(Random random, int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append((char)('a' + random.nextInt(26)));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reads both keys through <code>readFields</code> before comparing.
+	 */
+	public static class DeserializingComparator extends CompositeSortKeyComparator<Text, LongWritable> {
+		@Override
+		public int compare(CompositeSortKey<Text, LongWritable> key1, CompositeSortKey<Text, LongWritable> key2) {
+			return key1.compareTo(key2);
+		}
+	}
+}
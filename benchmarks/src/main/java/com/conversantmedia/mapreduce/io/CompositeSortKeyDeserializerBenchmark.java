@@ -0,0 +1,120 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.conversantmedia.mapreduce.io.CompositeSortKeySerialization.CompositeSortKeyDeserializer;
+import com.conversantmedia.mapreduce.io.CompositeSortKeySerialization.CompositeSortKeySerializer;
+
+/**
+ * Deserializes <code>Text</code>/<code>LongWritable</code> {@link CompositeSortKey}
+ * records from a buffer, as the reduce side does for each record. The <code>reuse</code>
+ * benchmark passes the previous key back in; <code>allocate</code> passes <code>null</code>.
+ * 
+ * Allocation is the figure of interest: read <code>gc.alloc.rate.norm</code>, the
+ * bytes allocated per record, reported by the GC profiler that
+ * {@link com.conversantmedia.mapreduce.BenchmarkRunner} attaches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeSortKeyDeserializerBenchmark {
+
+	private static final int RECORD_COUNT = 1024;
+
+	@Param({"STANDARD", "GROUP_LENGTH_PREFIXED", "NORMALIZED"})
+	public CompositeSortKeySerialization.Layout layout;
+
+	private byte[] data;
+	private int length;
+
+	private final DataInputBuffer in = new DataInputBuffer();
+
+	private CompositeSortKeyDeserializer<?, ?> deserializer;
+
+	@SuppressWarnings("rawtypes")
+	private CompositeSortKey key;
+
+	@Setup @SuppressWarnings({ "rawtypes", "unchecked" })
+	public void setup() throws IOException {
+		Random random = new Random(42);
+		CompositeSortKeySerializer serializer = new CompositeSortKeySerializer(layout);
+		DataOutputBuffer out = new DataOutputBuffer();
+		serializer.open(out);
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			serializer.serialize(new CompositeSortKey<>(
+					new Text("group-" + random.nextInt(1000)), new LongWritable(random.nextLong())));
+		}
+		data = out.getData();
+		length = out.getLength();
+
+		deserializer = new CompositeSortKeyDeserializer(Text.class, LongWritable.class, layout, new Configuration(false));
+		deserializer.open(in);
+		in.reset(data, length);
+		key = deserialize(null);
+	}
+
+	@Benchmark
+	@SuppressWarnings("rawtypes")
+	public CompositeSortKey reuse() throws IOException {
+		key = deserialize(key);
+		return key;
+	}
+
+	@Benchmark
+	@SuppressWarnings("rawtypes")
+	public CompositeSortKey allocate() throws IOException {
+		return deserialize(null);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private CompositeSortKey deserialize(CompositeSortKey reuse) throws IOException {
+		if (in.getPosition() >= length) {
+			in.reset(data, length);
+		}
+		return ((CompositeSortKeyDeserializer)deserializer).deserialize(reuse);
+	}
+}
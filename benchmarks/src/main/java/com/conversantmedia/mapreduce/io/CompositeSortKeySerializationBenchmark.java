@@ -0,0 +1,91 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.conversantmedia.mapreduce.io.CompositeSortKeySerialization.CompositeSortKeySerializer;
+
+/**
+ * Serializes <code>Text</code>/<code>LongWritable</code> {@link CompositeSortKey}
+ * records into a buffer, as the map side does when collecting output, in each
+ * supported layout. The reverse direction is covered by
+ * {@link CompositeSortKeyDeserializerBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeSortKeySerializationBenchmark {
+
+	private static final int KEY_COUNT = 1024;
+
+	@Param({"STANDARD", "GROUP_LENGTH_PREFIXED", "NORMALIZED"})
+	public CompositeSortKeySerialization.Layout layout;
+
+	private CompositeSortKey<Text, LongWritable>[] keys;
+
+	private int idx;
+
+	private final DataOutputBuffer out = new DataOutputBuffer();
+
+	@SuppressWarnings("rawtypes")
+	private CompositeSortKeySerializer serializer;
+
+	@Setup @SuppressWarnings({ "rawtypes", "unchecked" })
+	public void setup() throws IOException {
+		Random random = new Random(42);
+		keys = new CompositeSortKey[KEY_COUNT];
+		for (int i = 0; i < KEY_COUNT; i++) {
+			keys[i] = new CompositeSortKey<>(
+					new Text("group-" + random.nextInt(1000)), new LongWritable(random.nextLong()));
+		}
+		serializer = new CompositeSortKeySerializer(layout);
+		serializer.open(out);
+	}
+
+	@Benchmark @SuppressWarnings("unchecked")
+	public int serialize() throws IOException {
+		out.reset();
+		serializer.serialize(keys[idx++ & KEY_COUNT - 1]);
+		return out.getLength();
+	}
+}
@@ -0,0 +1,146 @@
+package com.conversantmedia.mapreduce.io.avro;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.mapreduce.Job;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serializes and deserializes a mix of {@link Impression} and {@link Click}
+ * records through {@link AvroMultiSerializer}/{@link AvroMultiDeserializer},
+ * as a job with multi-schema map output does in the shuffle. Impressions, the
+ * more common record, are registered second, either reflect-mapped or as a
+ * generated specific record depending on <code>impressionType</code>. The remaining
+ * <code>registeredSchemas</code> are unused placeholders registered ahead of
+ * both, as in a job sharing one schema list across several stages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvroMultiSerializationBenchmark {
+
+	private static final int RECORD_COUNT = 1024;
+
+	@Param({"2", "16"})
+	public int registeredSchemas;
+
+	@Param({"reflect", "specific"})
+	public String impressionType;
+
+	private AvroMultiWrapper<Object>[] records;
+
+	private int idx;
+
+	private final DataOutputBuffer out = new DataOutputBuffer();
+	private final DataInputBuffer in = new DataInputBuffer();
+
+	private byte[] data;
+	private int length;
+
+	private AvroMultiSerializer<Object> serializer;
+	private AvroMultiDeserializer<Object> deserializer;
+
+	private AvroMultiWrapper<Object> wrapper;
+
+	@Setup @SuppressWarnings("unchecked")
+	public void setup() throws IOException {
+		Job job = Job.getInstance(new Configuration());
+		Schema[] schemas = new Schema[registeredSchemas];
+		for (int i = 0; i < schemas.length - 2; i++) {
+			schemas[i] = Schema.createRecord("Placeholder" + i, null, "com.example", false);
+		}
+		schemas[schemas.length - 2] = Click.SCHEMA$;
+		schemas[schemas.length - 1] = "specific".equals(impressionType) ? ImpressionRecord.SCHEMA$ : Impression.SCHEMA$;
+		MultiSchemaAvroSerialization.registerSchemas(job, schemas);
+		Configuration conf = job.getConfiguration();
+
+		Random random = new Random(42);
+		records = new AvroMultiWrapper[RECORD_COUNT];
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			String userId = Long.toHexString(random.nextLong());
+			Object datum;
+			if (random.nextInt(4) == 0) {
+				datum = new Click(System.currentTimeMillis(), userId, "http://example.com/landing/" + random.nextInt(100));
+			}
+			else if ("specific".equals(impressionType)) {
+				datum = new ImpressionRecord(System.currentTimeMillis(), userId, "campaign-" + random.nextInt(50),
+						random.nextInt(10000), random.nextDouble());
+			}
+			else {
+				datum = new Impression(System.currentTimeMillis(), userId, "campaign-" + random.nextInt(50),
+						random.nextInt(10000), random.nextDouble());
+			}
+			records[i] = new AvroMultiWrapper<>(datum);
+		}
+
+		serializer = new AvroMultiSerializer<>(conf);
+		serializer.open(out);
+		for (AvroMultiWrapper<Object> record : records) {
+			serializer.serialize(record);
+		}
+		data = out.getData().clone();
+		length = out.getLength();
+
+		deserializer = new AvroMultiDeserializer<>(conf);
+		deserializer.open(in);
+		in.reset(data, length);
+	}
+
+	@Benchmark
+	public int serialize() throws IOException {
+		out.reset();
+		serializer.serialize(records[idx++ & RECORD_COUNT - 1]);
+		return out.getLength();
+	}
+
+	@Benchmark
+	public AvroMultiWrapper<Object> deserialize() throws IOException {
+		if (in.getPosition() >= length) {
+			in.reset(data, length);
+		}
+		// Records alternate types, so the datum itself can't be reused
+		wrapper = deserializer.deserialize(wrapper);
+		wrapper.datum(null);
+		return wrapper;
+	}
+}
@@ -0,0 +1,51 @@
+package com.conversantmedia.mapreduce.io.avro;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.avro.Schema;
+import org.apache.avro.reflect.ReflectData;
+
+/**
+ * Reflect-mapped record used by {@link AvroMultiSerializationBenchmark}. The
+ * static <code>SCHEMA$</code> member is what
+ * {@link MultiSchemaAvroSerialization} looks up by class name.
+ */
+public class Impression {
+
+	public static final Schema SCHEMA$ = ReflectData.get().getSchema(Impression.class);
+
+	public long timestamp;
+	public String userId;
+	public String campaign;
+	public int placementId;
+	public double bid;
+
+	public Impression() {}
+
+	public Impression(long timestamp, String userId, String campaign, int placementId, double bid) {
+		this.timestamp = timestamp;
+		this.userId = userId;
+		this.campaign = campaign;
+		this.placementId = placementId;
+		this.bid = bid;
+	}
+}
@@ -0,0 +1,86 @@
+package com.conversantmedia.mapreduce.io.avro;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.specific.SpecificRecordBase;
+
+/**
+ * The {@link Impression} record as a generated {@link SpecificRecordBase} class
+ * would define it, for comparing the specific and reflect code paths in
+ * {@link AvroMultiSerializationBenchmark}.
+ */
+public class ImpressionRecord extends SpecificRecordBase {
+
+	public static final Schema SCHEMA$ = new Schema.Parser().parse("{\"type\":\"record\","
+			+ "\"name\":\"ImpressionRecord\",\"namespace\":\"com.conversantmedia.mapreduce.io.avro\",\"fields\":["
+			+ "{\"name\":\"timestamp\",\"type\":\"long\"},"
+			+ "{\"name\":\"userId\",\"type\":{\"type\":\"string\",\"avro.java.string\":\"String\"}},"
+			+ "{\"name\":\"campaign\",\"type\":{\"type\":\"string\",\"avro.java.string\":\"String\"}},"
+			+ "{\"name\":\"placementId\",\"type\":\"int\"},"
+			+ "{\"name\":\"bid\",\"type\":\"double\"}]}");
+
+	public long timestamp;
+	public String userId;
+	public String campaign;
+	public int placementId;
+	public double bid;
+
+	public ImpressionRecord() {}
+
+	public ImpressionRecord(long timestamp, String userId, String campaign, int placementId, double bid) {
+		this.timestamp = timestamp;
+		this.userId = userId;
+		this.campaign = campaign;
+		this.placementId = placementId;
+		this.bid = bid;
+	}
+
+	@Override
+	public Schema getSchema() {
+		return SCHEMA$;
+	}
+
+	@Override
+	public Object get(int field) {
+		switch (field) {
+		case 0: return timestamp;
+		case 1: return userId;
+		case 2: return campaign;
+		case 3: return placementId;
+		case 4: return bid;
+		default: throw new AvroRuntimeException("Bad index");
+		}
+	}
+
+	@Override
+	public void put(int field, Object value) {
+		switch (field) {
+		case 0: timestamp = (Long)value; break;
+		case 1: userId = (String)value; break;
+		case 2: campaign = (String)value; break;
+		case 3: placementId = (Integer)value; break;
+		case 4: bid = (Double)value; break;
+		default: throw new AvroRuntimeException("Bad index");
+		}
+	}
+}
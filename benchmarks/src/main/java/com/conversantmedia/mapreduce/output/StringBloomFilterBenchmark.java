@@ -0,0 +1,87 @@
+package com.conversantmedia.mapreduce.output;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adds to and probes a {@link StringBloomFilter} sized for <code>insertions</code>
+ * entries at the default false positive rate. Lookups alternate between members
+ * and strings that were never added.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringBloomFilterBenchmark {
+
+	private static final int PROBE_COUNT = 1024;
+
+	@Param({"100000", "10000000"})
+	public int insertions;
+
+	private StringBloomFilter filter;
+
+	private String[] members;
+	private String[] probes;
+
+	private int idx;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		filter = new StringBloomFilter();
+		filter.init(insertions);
+		members = new String[PROBE_COUNT];
+		probes = new String[PROBE_COUNT];
+		for (int i = 0; i < PROBE_COUNT; i++) {
+			members[i] = "user-" + random.nextLong();
+			filter.addToFilter(members[i]);
+			probes[i] = (i & 1) == 0 ? members[i] : "absent-" + random.nextLong();
+		}
+	}
+
+	@Benchmark
+	public void add() {
+		filter.addToFilter(members[idx++ & PROBE_COUNT - 1]);
+	}
+
+	@Benchmark
+	public boolean mightContain() {
+		return filter.mightContain(probes[idx++ & PROBE_COUNT - 1]);
+	}
+}
@@ -0,0 +1,139 @@
+package com.conversantmedia.mapreduce.tool;
+
+/*
+ * #%L
+ * Mara Benchmarks
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.conversantmedia.mapreduce.tool.ResourceCodecs.JavaCodec;
+import com.conversantmedia.mapreduce.tool.ResourceCodecs.WritableCodec;
+
+/**
+ * Measures task setup latency for a distributed <code>@Resource</code> bean: the
+ * time to decode it from the localized cache file. The default of 2.5 million
+ * entries encodes to roughly 100MB uncompressed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ResourceCodecBenchmark {
+
+	@Param({"java", "writable"})
+	public String codec;
+
+	@Param({"none", "gzip"})
+	public String compression;
+
+	@Param({"2500000"})
+	public int entries;
+
+	private Configuration conf;
+
+	private ResourceCodec resourceCodec;
+
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+		conf = new Configuration(false);
+		if ("gzip".equals(compression)) {
+			ResourceCodecs.setCompression(conf, GzipCodec.class);
+		}
+		resourceCodec = "java".equals(codec)? new JavaCodec() : new WritableCodec();
+
+		DimensionTable table = new DimensionTable();
+		for (int i = 0; i < entries; i++) {
+			table.values.put("campaign-" + i, "advertiser-" + (i % 10000) + "/line-item-" + i);
+		}
+		file = File.createTempFile("dimension", ResourceCodecs.suffix(conf));
+		ResourceCodecs.write(conf, resourceCodec, table, file);
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public Object decode() throws IOException {
+		return ResourceCodecs.read(conf, resourceCodec, DimensionTable.class, file);
+	}
+
+	/**
+	 * A lookup map that can be written by either codec.
+	 */
+	public static class DimensionTable implements Writable, Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final HashMap<String, String> values = new HashMap<>();
+
+		@Override
+		public void write(DataOutput out) throws IOException {
+			WritableUtils.writeVInt(out, values.size());
+			for (Entry<String, String> e : values.entrySet()) {
+				WritableUtils.writeString(out, e.getKey());
+				WritableUtils.writeString(out, e.getValue());
+			}
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException {
+			values.clear();
+			int size = WritableUtils.readVInt(in);
+			for (int i = 0; i < size; i++) {
+				values.put(WritableUtils.readString(in), WritableUtils.readString(in));
+			}
+		}
+
+		public Map<String, String> getValues() {
+			return values;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapreduce.Mapper;
+
+import com.conversantmedia.mapreduce.tool.annotation.MapperService;
+
+/**
+ * Base class for mappers reading {@link CombineTextBatchInputFormat}, which are
+ * handed many lines per call rather than one. Parse/filter mappers avoid a call
+ * through the mapper stack and a <code>Text</code> per line by working on the
+ * batch's shared bytes directly:
+ * <pre>
+ * protected void mapBatch(FileLineWritable first, LineBatch batch, Context context) {
+ *     byte[] data = batch.getData();
+ *     for (int i = 0; i &lt; batch.size(); i++) {
+ *         // parse data[batch.getStart(i) .. batch.getStart(i) + batch.getLength(i))
+ *     }
+ * }
+ * </pre>
+ *
+ * @param <KEYOUT>		the output key type
+ * @param <VALUEOUT>	the output value type
+ */
+@MapperService
+public abstract class BatchMapper<KEYOUT, VALUEOUT> extends Mapper<FileLineWritable, LineBatch, KEYOUT, VALUEOUT> {
+
+	@Override
+	protected final void map(FileLineWritable key, LineBatch value, Context context)
+			throws IOException, InterruptedException {
+		mapBatch(key, value, context);
+	}
+
+	/**
+	 * Called once for each batch of lines.
+	 * @param first		the file and offset of the batch's first line. All lines
+	 * 					in a batch come from the same file.
+	 * @param batch		the lines
+	 * @param context	the task context
+	 * @throws IOException			if output cannot be written
+	 * @throws InterruptedException	if interrupted
+	 */
+	protected abstract void mapBatch(FileLineWritable first, LineBatch batch, Context context)
+			throws IOException, InterruptedException;
+}
@@ -0,0 +1,333 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+
+import com.conversantmedia.mapreduce.input.CombineTextFileInputFormat.FileLineWritableRecordReader;
+
+/**
+ * Batch mode of {@link CombineTextFileInputFormat}: splits are formed the same way,
+ * but each record is a {@link LineBatch} of up to
+ * {@value #DEFAULT_BATCH_LINES} consecutive lines (or 1MB of them) from one file,
+ * keyed by the position of its first line. Use with a {@link BatchMapper}.
+ */
+public class CombineTextBatchInputFormat extends CombineFileInputFormat<FileLineWritable, LineBatch> {
+
+	public static final String CONF_KEY_BATCH_LINES = "com.conversantmedia.mapreduce.input.combine.batch.lines";
+	public static final String CONF_KEY_BATCH_BYTES = "com.conversantmedia.mapreduce.input.combine.batch.bytes";
+
+	public static final int DEFAULT_BATCH_LINES = 1024;
+	public static final int DEFAULT_BATCH_BYTES = 1024 * 1024;
+
+	// LineRecordReader's custom delimiter setting
+	private static final String CONF_KEY_RECORD_DELIMITER = "textinputformat.record.delimiter";
+
+	/**
+	 * Set the maximum number of lines in a batch.
+	 * @param job	the job to configure
+	 * @param lines	the maximum number of lines
+	 */
+	public static void setBatchLines(Job job, int lines) {
+		job.getConfiguration().setInt(CONF_KEY_BATCH_LINES, lines);
+	}
+
+	@Override
+	protected List<FileStatus> listStatus(JobContext job) throws IOException {
+		return InputLister.get(job.getConfiguration()).listInputFiles(job);
+	}
+
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		if (SplitPacker.isEnabled(job.getConfiguration())) {
+			return SplitPacker.getSplits(job, listStatus(job));
+		}
+		return super.getSplits(job);
+	}
+
+	@Override
+	public RecordReader<FileLineWritable, LineBatch> createRecordReader(
+			InputSplit split, TaskAttemptContext context) throws IOException {
+		return new CombineFileRecordReader<>(
+				(CombineFileSplit)split, context, LineBatchRecordReader.class);
+	}
+
+	/**
+	 * Reads the lines of one file of a combined split straight from its (possibly
+	 * decompressed) stream into the batch's array, where they are scanned for line
+	 * ends in place: no <code>Text</code> or key is produced per line. As with
+	 * <code>LineRecordReader</code>, lines end at <code>\n</code>, <code>\r</code>
+	 * or <code>\r\n</code>, and a chunk starting mid-file begins after the first
+	 * line end within it.
+	 * <p>
+	 * Input that needs <code>LineRecordReader</code>'s handling, i.e. a custom
+	 * <code>textinputformat.record.delimiter</code> or a splittable compression
+	 * codec, is read a line at a time and copied into the batch instead.
+	 */
+	public static class LineBatchRecordReader extends RecordReader<FileLineWritable, LineBatch> {
+
+		// Bytes read from the stream at a time
+		private static final int READ_SIZE = 64 * 1024;
+
+		private final int splitIndex;
+
+		private final FileLineWritable key = new FileLineWritable();
+
+		private final LineBatch batch = new LineBatch();
+
+		private int maxLines;
+
+		private int maxBytes;
+
+		// Only set for input read a line at a time
+		private FileLineWritableRecordReader lineReader;
+
+		private String fileName;
+
+		private FSDataInputStream fileIn;
+
+		private InputStream in;
+
+		private Decompressor decompressor;
+
+		// The chunk of the file, for progress
+		private long chunkStart;
+		private long chunkEnd;
+
+		// Lines starting past this offset belong to the next chunk
+		private long end;
+
+		// File offset of the first byte in the batch's array
+		private long bufferOffset;
+
+		// Bytes read into the array, and the start of the next unread line
+		private int filled;
+		private int next;
+
+		// Length of the last line terminator found
+		private int terminator;
+
+		private boolean eof;
+
+		public LineBatchRecordReader(CombineFileSplit split,
+				TaskAttemptContext context, Integer splitIndex) {
+			this.splitIndex = splitIndex;
+		}
+
+		@Override
+		public void initialize(InputSplit split, TaskAttemptContext context)
+				throws IOException, InterruptedException {
+			CombineFileSplit combineSplit = (CombineFileSplit)split;
+			Configuration conf = context.getConfiguration();
+			maxLines = Math.max(1, conf.getInt(CONF_KEY_BATCH_LINES, DEFAULT_BATCH_LINES));
+			maxBytes = Math.max(1, conf.getInt(CONF_KEY_BATCH_BYTES, DEFAULT_BATCH_BYTES));
+
+			Path path = combineSplit.getPath(splitIndex);
+			CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(path);
+			if (conf.get(CONF_KEY_RECORD_DELIMITER) != null || codec instanceof SplittableCompressionCodec) {
+				lineReader = new FileLineWritableRecordReader(combineSplit, context, splitIndex);
+				lineReader.initialize(split, context);
+				return;
+			}
+
+			// Interned as in FileLineWritableRecordReader
+			fileName = conf.getBoolean(CombineTextFileInputFormat.CONF_KEY_FILE_INDEX_KEYS, false)?
+					null : path.getName().intern();
+			chunkStart = combineSplit.getOffset(splitIndex);
+			chunkEnd = chunkStart + combineSplit.getLength(splitIndex);
+			fileIn = path.getFileSystem(conf).open(path);
+			if (codec != null) {
+				decompressor = CodecPool.getDecompressor(codec);
+				in = codec.createInputStream(fileIn, decompressor);
+				end = Long.MAX_VALUE;
+			}
+			else {
+				fileIn.seek(chunkStart);
+				in = fileIn;
+				end = chunkEnd;
+				bufferOffset = chunkStart;
+				// The previous chunk's reader reads the line straddling the boundary
+				if (chunkStart != 0) {
+					int lineEnd = nextLineEnd();
+					if (lineEnd >= 0) {
+						next = lineEnd + terminator;
+					}
+				}
+			}
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			if (lineReader != null) {
+				return nextLines();
+			}
+			// Move the unread bytes to the front of the array
+			byte[] data = batch.getData();
+			if (next > 0) {
+				System.arraycopy(data, next, data, 0, filled - next);
+				bufferOffset += next;
+				filled -= next;
+				next = 0;
+			}
+			batch.clear();
+			while (batch.size() < maxLines && next < maxBytes && bufferOffset + next <= end) {
+				int lineEnd = nextLineEnd();
+				if (lineEnd < 0) {
+					break;
+				}
+				batch.addLine(bufferOffset + next, next, lineEnd - next);
+				next = lineEnd + terminator;
+			}
+			if (batch.size() == 0) {
+				return false;
+			}
+			if (fileName == null) {
+				key.set(splitIndex, batch.getOffset(0));
+			} else {
+				key.set(fileName, batch.getOffset(0));
+			}
+			return true;
+		}
+
+		// Returns the end of the line starting at next, setting its terminator's
+		// length, or -1 if the stream is exhausted
+		private int nextLineEnd() throws IOException {
+			int scan = next;
+			while (true) {
+				byte[] data = batch.getData();
+				for (; scan < filled; scan++) {
+					byte b = data[scan];
+					if (b == '\n') {
+						terminator = 1;
+						return scan;
+					}
+					if (b == '\r') {
+						if (scan + 1 < filled) {
+							terminator = data[scan + 1] == '\n'? 2 : 1;
+							return scan;
+						}
+						if (eof) {
+							terminator = 1;
+							return scan;
+						}
+						// Need the next byte to tell \r from \r\n
+						break;
+					}
+				}
+				if (eof) {
+					terminator = 0;
+					return filled > next? filled : -1;
+				}
+				fill();
+			}
+		}
+
+		private void fill() throws IOException {
+			byte[] data = batch.ensureCapacity(filled + READ_SIZE);
+			int read = in.read(data, filled, data.length - filled);
+			if (read < 0) {
+				eof = true;
+			} else {
+				filled += read;
+			}
+		}
+
+		private boolean nextLines() throws IOException, InterruptedException {
+			batch.clear();
+			while (batch.size() < maxLines && batch.getDataLength() < maxBytes
+					&& lineReader.nextKeyValue()) {
+				FileLineWritable line = lineReader.getCurrentKey();
+				if (batch.size() == 0) {
+					if (line.getFileName() == null) {
+						key.set(line.getFileIndex(), line.getOffset());
+					} else {
+						key.set(line.getFileName(), line.getOffset());
+					}
+				}
+				Text value = lineReader.getCurrentValue();
+				batch.add(line.getOffset(), value.getBytes(), value.getLength());
+			}
+			return batch.size() > 0;
+		}
+
+		@Override
+		public FileLineWritable getCurrentKey() throws IOException, InterruptedException {
+			return key;
+		}
+
+		@Override
+		public LineBatch getCurrentValue() throws IOException, InterruptedException {
+			return batch;
+		}
+
+		@Override
+		public float getProgress() throws IOException, InterruptedException {
+			if (lineReader != null) {
+				return lineReader.getProgress();
+			}
+			if (chunkEnd == chunkStart) {
+				return 0.0f;
+			}
+			return Math.min(1.0f, (fileIn.getPos() - chunkStart) / (float)(chunkEnd - chunkStart));
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (lineReader != null) {
+				lineReader.close();
+				return;
+			}
+			try {
+				if (in != null) {
+					in.close();
+				}
+			}
+			finally {
+				if (decompressor != null) {
+					CodecPool.returnDecompressor(decompressor);
+					decompressor = null;
+				}
+			}
+		}
+	}
+}
@@ -22,11 +22,14 @@ package com.conversantmedia.mapreduce.input;
 
 
 import java.io.IOException;
+import java.util.List;
 
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
@@ -42,9 +45,40 @@ import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
  * http://www.idryman.org/blog/2013/09/22/process-small-files-on-hadoop-using-combinefileinputformat-1/
  * Needed to rewrite to work properly in new API
  *
+ * As with other Hadoop record readers, the key returned for each line is
+ * reused; copy it if it must outlive the call to <code>map</code>.
+ *
  */
 public class CombineTextFileInputFormat extends CombineFileInputFormat<FileLineWritable, Text> {
 
+	public static final String CONF_KEY_FILE_INDEX_KEYS = "com.conversantmedia.mapreduce.input.combine.fileindex";
+
+	/**
+	 * Identify each line's file by its position within the combined split rather
+	 * than by name. The index is only meaningful within the map task that read
+	 * the split, but keys are smaller and cheaper to compare when the mapper
+	 * only needs to tell files apart.
+	 * @param job		the job to configure
+	 * @param enabled	<code>true</code> for index-only keys
+	 * @see FileLineWritable#getFileIndex()
+	 */
+	public static void setFileIndexKeys(Job job, boolean enabled) {
+		job.getConfiguration().setBoolean(CONF_KEY_FILE_INDEX_KEYS, enabled);
+	}
+
+	@Override
+	protected List<FileStatus> listStatus(JobContext job) throws IOException {
+		return InputLister.get(job.getConfiguration()).listInputFiles(job);
+	}
+
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		if (SplitPacker.isEnabled(job.getConfiguration())) {
+			return SplitPacker.getSplits(job, listStatus(job));
+		}
+		return super.getSplits(job);
+	}
+
 	@Override
 	public RecordReader<FileLineWritable, Text> createRecordReader(
 			InputSplit split, TaskAttemptContext context) throws IOException {
@@ -60,6 +94,8 @@ public class CombineTextFileInputFormat extends CombineFileInputFormat<FileLineW
 
 		private final int splitIndex;
 
+		private final FileLineWritable key = new FileLineWritable();
+
 		public FileLineWritableRecordReader(CombineFileSplit split,
 				TaskAttemptContext context, Integer splitIndex) {
 			delegate = new LineRecordReader();
@@ -71,7 +107,10 @@ public class CombineTextFileInputFormat extends CombineFileInputFormat<FileLineW
 				throws IOException, InterruptedException {
 			CombineFileSplit combineSplit = (CombineFileSplit)split;
 			Path path = combineSplit.getPath(splitIndex);
-			this.fileName = path.getName();
+			// Null selects index-only keys. Interned since chunks of one
+			// file may be read by several readers in the same split.
+			this.fileName = context.getConfiguration().getBoolean(CONF_KEY_FILE_INDEX_KEYS, false)?
+					null : path.getName().intern();
 			FileSplit fileSplit = new FileSplit(
 					path,
 					combineSplit.getOffset(splitIndex),
@@ -89,8 +128,13 @@ public class CombineTextFileInputFormat extends CombineFileInputFormat<FileLineW
 		@Override
 		public FileLineWritable getCurrentKey() throws IOException,
 				InterruptedException {
-			LongWritable offset = delegate.getCurrentKey();
-			return new FileLineWritable(this.fileName, offset.get());
+			long offset = delegate.getCurrentKey().get();
+			if (this.fileName == null) {
+				key.set(this.splitIndex, offset);
+			} else {
+				key.set(this.fileName, offset);
+			}
+			return key;
 		}
 
 		@Override
@@ -27,6 +27,8 @@ import java.io.IOException;
 
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 /**
  *
@@ -34,19 +36,38 @@ import org.apache.hadoop.io.WritableComparable;
  * http://www.idryman.org/blog/2013/09/22/process-small-files-on-hadoop-using-
  * combinefileinputformat-1/
  *
+ * Serialized as the file name (a vint length and its UTF-8 bytes, as
+ * {@link Text}) followed by the offset as a vlong, so keys sort on
+ * their raw bytes with the registered {@link Comparator}.
+ *
+ * Keys without a file name identify the file by {@link #fileIndex}
+ * instead, its position within the combined split (see
+ * {@link CombineTextFileInputFormat#setFileIndexKeys}). The index is
+ * written in place of the name length as the negative vint
+ * <code>-1 - fileIndex</code>, and such keys sort before named ones.
  *
  */
 public class FileLineWritable implements WritableComparable<FileLineWritable> {
 	public long offset;
 	public String fileName;
+	public int fileIndex;
+
+	static {
+		WritableComparator.define(FileLineWritable.class, new Comparator());
+	}
 
 	public FileLineWritable() {}
 
-	public FileLineWritable(String fileName, Long offset) {
+	public FileLineWritable(String fileName, long offset) {
 		this.fileName = fileName;
 		this.offset = offset;
 	}
 
+	public FileLineWritable(int fileIndex, long offset) {
+		this.fileIndex = fileIndex;
+		this.offset = offset;
+	}
+
 	public long getOffset() {
 		return offset;
 	}
@@ -55,32 +76,96 @@ public class FileLineWritable implements WritableComparable<FileLineWritable> {
 		return fileName;
 	}
 
+	/**
+	 * @return	the file's position within the split that produced this key.
+	 * 			Only meaningful when {@link #getFileName()} is <code>null</code>.
+	 */
+	public int getFileIndex() {
+		return fileIndex;
+	}
+
+	/**
+	 * Points this key at a line of a named file.
+	 * @param fileName	the file name
+	 * @param offset	the line's byte offset within the file
+	 */
+	public void set(String fileName, long offset) {
+		this.fileName = fileName;
+		this.fileIndex = 0;
+		this.offset = offset;
+	}
+
+	/**
+	 * Points this key at a line of the file at the given split position.
+	 * @param fileIndex	the file's position within the split
+	 * @param offset	the line's byte offset within the file
+	 */
+	public void set(int fileIndex, long offset) {
+		this.fileName = null;
+		this.fileIndex = fileIndex;
+		this.offset = offset;
+	}
+
 	@Override
 	public void readFields(DataInput in) throws IOException {
-		this.offset = in.readLong();
-		this.fileName = Text.readString(in);
+		int n = WritableUtils.readVInt(in);
+		if (n < 0) {
+			set(-1 - n, WritableUtils.readVLong(in));
+			return;
+		}
+		byte[] bytes = new byte[n];
+		in.readFully(bytes);
+		set(Text.decode(bytes), WritableUtils.readVLong(in));
 	}
 
 	@Override
 	public void write(DataOutput out) throws IOException {
-		out.writeLong(offset);
-		Text.writeString(out, fileName);
+		if (fileName == null) {
+			WritableUtils.writeVInt(out, -1 - fileIndex);
+		} else {
+			Text.writeString(out, fileName);
+		}
+		WritableUtils.writeVLong(out, offset);
 	}
 
 	@Override
 	public int compareTo(FileLineWritable that) {
-		int cmp = this.fileName.compareTo(that.fileName);
+		int cmp;
+		if (this.fileName == null || that.fileName == null) {
+			cmp = this.fileName != null? 1
+					: that.fileName != null? -1 : Integer.compare(this.fileIndex, that.fileIndex);
+		} else {
+			cmp = compareCodePoints(this.fileName, that.fileName);
+		}
 		if (cmp != 0) {
 			return cmp;
 		}
-		return (int) Math.signum((double) (this.offset - that.offset));
+		return Long.compare(this.offset, that.offset);
+	}
+
+	// Orders names by code point, which is the order of their UTF-8 bytes as
+	// compared by Text and the raw comparator, rather than by UTF-16 code units,
+	// which differ for characters outside the BMP
+	private static int compareCodePoints(String name1, String name2) {
+		int i1 = 0;
+		int i2 = 0;
+		while (i1 < name1.length() && i2 < name2.length()) {
+			int c1 = name1.codePointAt(i1);
+			int c2 = name2.codePointAt(i2);
+			if (c1 != c2) {
+				return Integer.compare(c1, c2);
+			}
+			i1 += Character.charCount(c1);
+			i2 += Character.charCount(c2);
+		}
+		return Integer.compare(name1.length() - i1, name2.length() - i2);
 	}
 
 	@Override
 	public int hashCode() { // generated hashCode()
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + (fileName == null ? 0 : fileName.hashCode());
+		result = prime * result + (fileName == null ? fileIndex : fileName.hashCode());
 		result = prime * result + (int) (offset ^ offset >>> 32);
 		return result;
 	}
@@ -98,7 +183,7 @@ public class FileLineWritable implements WritableComparable<FileLineWritable> {
 		}
 		FileLineWritable other = (FileLineWritable) obj;
 		if (fileName == null) {
-			if (other.fileName != null) {
+			if (other.fileName != null || fileIndex != other.fileIndex) {
 				return false;
 			}
 		} else if (!fileName.equals(other.fileName)) {
@@ -110,4 +195,49 @@ public class FileLineWritable implements WritableComparable<FileLineWritable> {
 		return true;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Compares serialized keys without deserializing them: the file names
+	 * byte-wise, as {@link Text} does (or the file indexes), then the
+	 * decoded offsets. Subclasses overriding the object comparison have
+	 * their serialized keys deserialized and compared with it.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		public Comparator() {
+			super(FileLineWritable.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			// The raw comparison only matches this class's own ordering
+			if (getClass() != Comparator.class) {
+				return super.compare(b1, s1, l1, b2, s2, l2);
+			}
+			try {
+				int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+				int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+				int len1 = readVInt(b1, s1);
+				int len2 = readVInt(b2, s2);
+				int cmp;
+				if (len1 < 0 && len2 < 0) {
+					// -1 - fileIndex: more negative is the higher index
+					cmp = Integer.compare(len2, len1);
+				} else if (len1 < 0 || len2 < 0) {
+					// Indexed keys sort before named ones
+					cmp = Integer.compare(len1, len2);
+				} else {
+					cmp = compareBytes(b1, s1 + n1, len1, b2, s2 + n2, len2);
+				}
+				if (cmp != 0) {
+					return cmp;
+				}
+				return Long.compare(
+						readVLong(b1, s1 + n1 + Math.max(len1, 0)),
+						readVLong(b2, s2 + n2 + Math.max(len2, 0)));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,342 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.InvalidInputException;
+import org.apache.hadoop.mapreduce.security.TokenCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists input paths and directories with a bounded pool of threads, remembering
+ * each result so that a path is listed at most once per lister.
+ * <p>
+ * Listers obtained with {@link #get} share a single instance between all copies
+ * of a configuration on which {@link #enableCache} was called, until
+ * {@link #release} is. <code>BaseTool</code> does this around each job, so the
+ * combine input formats' {@link #listInputFiles} at submission and the archiving
+ * of inputs after the job see the same listing.
+ */
+public final class InputLister {
+
+	public static final String CONF_KEY_THREADS = "com.conversantmedia.mapreduce.input.listing.threads";
+	public static final String CONF_KEY_CACHE_ID = "com.conversantmedia.mapreduce.input.listing.cacheid";
+
+	public static final int DEFAULT_THREADS = 16;
+
+	private static final ConcurrentMap<String, InputLister> CACHE = new ConcurrentHashMap<>();
+
+	// Marks a glob matching nothing, since the maps can't hold null
+	private static final FileStatus[] NO_MATCH = new FileStatus[0];
+
+	private static final PathFilter HIDDEN_FILE_FILTER = new PathFilter() {
+		@Override
+		public boolean accept(Path p) {
+			String name = p.getName();
+			return !name.startsWith("_") && !name.startsWith(".");
+		}
+	};
+
+	private final Configuration conf;
+
+	private final int threads;
+
+	private final ConcurrentMap<Path, FileStatus[]> globs = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Path, FileStatus[]> listings = new ConcurrentHashMap<>();
+
+	private InputLister(Configuration conf) {
+		this.conf = conf;
+		this.threads = Math.max(1, conf.getInt(CONF_KEY_THREADS, DEFAULT_THREADS));
+	}
+
+	/**
+	 * Share listings between copies of this configuration, including those made
+	 * for a job created from it.
+	 * @param conf	the configuration
+	 */
+	public static void enableCache(Configuration conf) {
+		if (conf.get(CONF_KEY_CACHE_ID) == null) {
+			conf.set(CONF_KEY_CACHE_ID, UUID.randomUUID().toString());
+		}
+	}
+
+	/**
+	 * Discards the listings shared by copies of this configuration.
+	 * @param conf	the configuration
+	 */
+	public static void release(Configuration conf) {
+		String id = conf.get(CONF_KEY_CACHE_ID);
+		if (id != null) {
+			CACHE.remove(id);
+		}
+	}
+
+	/**
+	 * @param conf	the configuration
+	 * @return		the lister shared by copies of this configuration if
+	 * 				{@link #enableCache} was called on it, otherwise a new one.
+	 */
+	public static InputLister get(Configuration conf) {
+		String id = conf.get(CONF_KEY_CACHE_ID);
+		if (id == null) {
+			return new InputLister(conf);
+		}
+		InputLister lister = CACHE.get(id);
+		if (lister == null) {
+			InputLister existing = CACHE.putIfAbsent(id, lister = new InputLister(conf));
+			if (existing != null) {
+				lister = existing;
+			}
+		}
+		return lister;
+	}
+
+	/**
+	 * Lists a job's input files as {@link FileInputFormat#listStatus} does: globs
+	 * are expanded, input directories replaced by their contents (recursively if
+	 * so configured) and hidden files and those rejected by the job's input path
+	 * filter are dropped.
+	 * @param job			the job
+	 * @return				the input files
+	 * @throws IOException	if an input doesn't exist or can't be listed
+	 */
+	public List<FileStatus> listInputFiles(JobContext job) throws IOException {
+		long start = System.currentTimeMillis();
+		Path[] inputs = FileInputFormat.getInputPaths(job);
+		if (inputs.length == 0) {
+			throw new IOException("No input paths specified in job");
+		}
+		TokenCache.obtainTokensForNamenodes(job.getCredentials(), inputs, job.getConfiguration());
+
+		boolean recursive = FileInputFormat.getInputDirRecursive(job);
+		PathFilter userFilter = FileInputFormat.getInputPathFilter(job);
+
+		List<FileStatus> result = new ArrayList<>();
+		List<IOException> errors = new ArrayList<>();
+		List<Path> dirs = new ArrayList<>();
+		List<FileStatus[]> matches = glob(Arrays.asList(inputs));
+		for (int i = 0; i < inputs.length; i++) {
+			FileStatus[] match = matches.get(i);
+			if (match == null) {
+				errors.add(new IOException("Input path does not exist: " + inputs[i]));
+			}
+			else if (match.length == 0) {
+				errors.add(new IOException("Input Pattern " + inputs[i] + " matches 0 files"));
+			}
+			else {
+				for (FileStatus status : match) {
+					if (accept(status, userFilter)) {
+						if (status.isDirectory()) {
+							dirs.add(status.getPath());
+						}
+						else {
+							result.add(status);
+						}
+					}
+				}
+			}
+		}
+		if (!errors.isEmpty()) {
+			throw new InvalidInputException(errors);
+		}
+
+		int listed = 0;
+		while (!dirs.isEmpty()) {
+			List<Path> subdirs = new ArrayList<>();
+			for (FileStatus[] listing : list(dirs)) {
+				for (FileStatus status : listing) {
+					if (accept(status, userFilter)) {
+						if (recursive && status.isDirectory()) {
+							subdirs.add(status.getPath());
+						}
+						else {
+							result.add(status);
+						}
+					}
+				}
+			}
+			listed += dirs.size();
+			dirs = subdirs;
+		}
+
+		logger().info("Listed [" + result.size() + "] input files from [" + inputs.length + "] paths and ["
+				+ listed + "] directories in [" + (System.currentTimeMillis() - start) + "] ms.");
+		return result;
+	}
+
+	private static boolean accept(FileStatus status, PathFilter userFilter) {
+		return HIDDEN_FILE_FILTER.accept(status.getPath())
+				&& (userFilter == null || userFilter.accept(status.getPath()));
+	}
+
+	/**
+	 * Expands the paths (which needn't contain wildcards) in parallel.
+	 * @param paths			the paths
+	 * @return				the matches for each path, in order, <code>null</code>
+	 * 						for a path that doesn't exist.
+	 * @throws IOException	if a path cannot be expanded
+	 */
+	public List<FileStatus[]> glob(List<Path> paths) throws IOException {
+		List<FileStatus[]> results = run(globs, paths, new Lister() {
+			@Override
+			public FileStatus[] list(FileSystem fs, Path path) throws IOException {
+				FileStatus[] matches = fs.globStatus(path);
+				return matches == null? NO_MATCH : matches;
+			}
+		});
+		for (int i = 0; i < results.size(); i++) {
+			if (results.get(i) == NO_MATCH) {
+				results.set(i, null);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Lists the contents of the directories in parallel, with block locations.
+	 * @param dirs			the directories
+	 * @return				the contents of each directory, in order
+	 * @throws IOException	if a directory cannot be listed
+	 */
+	public List<FileStatus[]> list(List<Path> dirs) throws IOException {
+		return run(listings, dirs, new Lister() {
+			@Override
+			public FileStatus[] list(FileSystem fs, Path path) throws IOException {
+				List<FileStatus> statuses = new ArrayList<>();
+				RemoteIterator<LocatedFileStatus> it = fs.listLocatedStatus(path);
+				while (it.hasNext()) {
+					statuses.add(it.next());
+				}
+				return statuses.toArray(new FileStatus[statuses.size()]);
+			}
+		});
+	}
+
+	/**
+	 * Lists a path as <code>BaseTool</code> archives it: the contents of an existing
+	 * directory, the file itself, or the matches of a glob.
+	 * @param path			the path
+	 * @return				the files and directories
+	 * @throws IOException	if the path cannot be listed
+	 */
+	public List<FileStatus> listPath(Path path) throws IOException {
+		FileStatus[] matches = glob(Collections.singletonList(path)).get(0);
+		if (matches == null) {
+			return new ArrayList<>();
+		}
+		if (matches.length == 1 && matches[0].isDirectory() && !hasWildcard(path)) {
+			return new ArrayList<>(Arrays.asList(list(Collections.singletonList(matches[0].getPath())).get(0)));
+		}
+		return new ArrayList<>(Arrays.asList(matches));
+	}
+
+	private static boolean hasWildcard(Path path) {
+		return path.toString().matches(".*[*?\\[{\\\\].*");
+	}
+
+	private interface Lister {
+		FileStatus[] list(FileSystem fs, Path path) throws IOException;
+	}
+
+	private List<FileStatus[]> run(final ConcurrentMap<Path, FileStatus[]> cache, List<Path> paths,
+			final Lister lister) throws IOException {
+		FileStatus[][] results = new FileStatus[paths.size()][];
+		List<Integer> pending = new ArrayList<>();
+		final List<Path> qualified = new ArrayList<>(paths.size());
+		for (int i = 0; i < paths.size(); i++) {
+			Path path = paths.get(i);
+			qualified.add(path.getFileSystem(conf).makeQualified(path));
+			results[i] = cache.get(qualified.get(i));
+			if (results[i] == null) {
+				pending.add(i);
+			}
+		}
+
+		if (pending.size() == 1 || threads == 1) {
+			for (int i : pending) {
+				Path path = qualified.get(i);
+				results[i] = lister.list(path.getFileSystem(conf), path);
+				cache.put(path, results[i]);
+			}
+		}
+		else if (!pending.isEmpty()) {
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, pending.size()));
+			try {
+				List<Future<FileStatus[]>> futures = new ArrayList<>(pending.size());
+				for (int i : pending) {
+					final Path path = qualified.get(i);
+					futures.add(executor.submit(new Callable<FileStatus[]>() {
+						@Override
+						public FileStatus[] call() throws IOException {
+							FileStatus[] result = lister.list(path.getFileSystem(conf), path);
+							cache.put(path, result);
+							return result;
+						}
+					}));
+				}
+				for (int j = 0; j < pending.size(); j++) {
+					results[pending.get(j)] = futures.get(j).get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted listing input paths", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException)e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+			finally {
+				executor.shutdownNow();
+			}
+		}
+		return new ArrayList<>(Arrays.asList(results));
+	}
+
+	private static Logger logger() {
+		return LoggerFactory.getLogger(InputLister.class);
+	}
+}
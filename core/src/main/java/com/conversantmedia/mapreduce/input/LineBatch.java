@@ -0,0 +1,152 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.charset.CharacterCodingException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * A batch of consecutive lines from one file, as read by
+ * {@link CombineTextBatchInputFormat}. The lines' bytes share a single array
+ * that, along with the batch itself, is reused for every batch; copy anything
+ * that must outlive the call to {@link BatchMapper#mapBatch}.
+ */
+public final class LineBatch {
+
+	private byte[] data = new byte[64 * 1024];
+	private int dataLength;
+
+	private int[] starts = new int[256];
+	private int[] lengths = new int[256];
+	private long[] offsets = new long[256];
+	private int size;
+
+	/**
+	 * @return	the number of lines in the batch
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return	the array holding the bytes of every line in the batch
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * @return	the number of bytes of {@link #getData()} holding the batch's lines,
+	 * 			up to the end of the last line
+	 */
+	public int getDataLength() {
+		return dataLength;
+	}
+
+	/**
+	 * @param i	the line's index in the batch
+	 * @return	the position in {@link #getData()} of the line's first byte
+	 */
+	public int getStart(int i) {
+		return starts[i];
+	}
+
+	/**
+	 * @param i	the line's index in the batch
+	 * @return	the length in bytes of the line, without its terminator
+	 */
+	public int getLength(int i) {
+		return lengths[i];
+	}
+
+	/**
+	 * @param i	the line's index in the batch
+	 * @return	the byte offset of the line within its file
+	 */
+	public long getOffset(int i) {
+		return offsets[i];
+	}
+
+	/**
+	 * Copies a line into the supplied <code>Text</code>.
+	 * @param i		the line's index in the batch
+	 * @param text	the text to set
+	 * @return		the text
+	 */
+	public Text getLine(int i, Text text) {
+		text.set(data, starts[i], lengths[i]);
+		return text;
+	}
+
+	/**
+	 * Decodes a line.
+	 * @param i		the line's index in the batch
+	 * @return		the line
+	 * @throws CharacterCodingException	if the line isn't valid UTF-8
+	 */
+	public String getString(int i) throws CharacterCodingException {
+		return Text.decode(data, starts[i], lengths[i]);
+	}
+
+	void clear() {
+		size = 0;
+		dataLength = 0;
+	}
+
+	/**
+	 * Copies a line onto the end of the batch.
+	 */
+	void add(long offset, byte[] b, int length) {
+		ensureCapacity(dataLength + length);
+		System.arraycopy(b, 0, data, dataLength, length);
+		addLine(offset, dataLength, length);
+	}
+
+	/**
+	 * Adds a line already read into {@link #getData()}.
+	 */
+	void addLine(long offset, int start, int length) {
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+		starts[size] = start;
+		lengths[size] = length;
+		offsets[size] = offset;
+		dataLength = start + length;
+		size++;
+	}
+
+	/**
+	 * Grows the array, keeping its contents, to hold at least <code>capacity</code> bytes.
+	 * @return	the array
+	 */
+	byte[] ensureCapacity(int capacity) {
+		if (capacity > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length * 2, capacity));
+		}
+		return data;
+	}
+}
@@ -0,0 +1,378 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Packs input files into {@link CombineFileSplit}s of roughly equal byte size,
+ * in place of {@link org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat}'s
+ * default grouping, which fills each node's splits to the maximum size and leaves
+ * whatever remains to small or off-rack splits.
+ * <p>
+ * Files (or, for splittable files, their blocks) are grouped by the nodes and then
+ * the racks holding them. Each group is packed largest first toward the target size,
+ * and only splits filled to at least the minimum fill ratio are kept at that level;
+ * the rest fall through to the next. Whatever remains after the rack pass is packed
+ * without regard to locality. No split exceeds the target size or the maximum file
+ * count, except for an unsplittable file larger than the target.
+ * <p>
+ * Sizes are estimates of the uncompressed bytes a task will read: compressed files
+ * count as their length times a per-codec ratio (configured by default extension,
+ * e.g. <code>com.conversantmedia.mapreduce.input.combine.packing.ratio.gz</code>,
+ * falling back to {@value #DEFAULT_COMPRESSION_RATIO}). Files with a splittable codec
+ * such as bzip2 are divided at block boundaries like uncompressed ones, others
+ * (gzip, for instance) are kept whole.
+ * <p>
+ * Enabled with {@link #enable} or <code>@FileInput(packSplits = true)</code>, and
+ * honored by {@link CombineTextFileInputFormat} and
+ * {@link com.conversantmedia.mapreduce.io.avro.CombineAvroKeyFileInputFormat}.
+ */
+public final class SplitPacker {
+
+	public static final String CONF_KEY_ENABLED = "com.conversantmedia.mapreduce.input.combine.packing.enabled";
+	public static final String CONF_KEY_TARGET_SIZE = "com.conversantmedia.mapreduce.input.combine.packing.targetsize";
+	public static final String CONF_KEY_MAX_FILES = "com.conversantmedia.mapreduce.input.combine.packing.maxfiles";
+	public static final String CONF_KEY_MIN_FILL = "com.conversantmedia.mapreduce.input.combine.packing.minfill";
+	public static final String CONF_KEY_RATIO_PREFIX = "com.conversantmedia.mapreduce.input.combine.packing.ratio.";
+	public static final String CONF_KEY_DEFAULT_RATIO = CONF_KEY_RATIO_PREFIX + "default";
+
+	public static final long DEFAULT_TARGET_SIZE = 128L * 1024 * 1024;
+	public static final int DEFAULT_MAX_FILES = 10000;
+	public static final float DEFAULT_MIN_FILL = 0.8f;
+	public static final float DEFAULT_COMPRESSION_RATIO = 4.0f;
+
+	private static final int MAX_LOCATIONS = 3;
+
+	private static final Comparator<Chunk> LARGEST_FIRST = new Comparator<Chunk>() {
+		@Override
+		public int compare(Chunk c1, Chunk c2) {
+			return Long.compare(c2.weight, c1.weight);
+		}
+	};
+
+	private SplitPacker() {}
+
+	/**
+	 * Enable size and locality aware packing of the job's combined input splits.
+	 * @param job			the job to configure
+	 * @param targetSize	the target split size in bytes, or <code>0</code> for the
+	 * 						job's maximum split size (or {@value #DEFAULT_TARGET_SIZE}
+	 * 						if that isn't set either)
+	 * @param maxFiles		the maximum number of files (or blocks) per split, or
+	 * 						<code>0</code> for {@value #DEFAULT_MAX_FILES}
+	 */
+	public static void enable(Job job, long targetSize, int maxFiles) {
+		Configuration conf = job.getConfiguration();
+		conf.setBoolean(CONF_KEY_ENABLED, true);
+		if (targetSize > 0) {
+			conf.setLong(CONF_KEY_TARGET_SIZE, targetSize);
+		}
+		if (maxFiles > 0) {
+			conf.setInt(CONF_KEY_MAX_FILES, maxFiles);
+		}
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(CONF_KEY_ENABLED, false);
+	}
+
+	/**
+	 * Packs the supplied files into combined splits.
+	 * @param job	the job context
+	 * @param files	the input files, as listed by the input format
+	 * @return		the splits
+	 * @throws IOException	if block locations cannot be retrieved
+	 */
+	public static List<InputSplit> getSplits(JobContext job, List<FileStatus> files) throws IOException {
+		Configuration conf = job.getConfiguration();
+		long targetSize = conf.getLong(CONF_KEY_TARGET_SIZE,
+				conf.getLong(FileInputFormat.SPLIT_MAXSIZE, DEFAULT_TARGET_SIZE));
+		if (targetSize <= 0) {
+			targetSize = DEFAULT_TARGET_SIZE;
+		}
+		int maxFiles = conf.getInt(CONF_KEY_MAX_FILES, DEFAULT_MAX_FILES);
+		float minFill = conf.getFloat(CONF_KEY_MIN_FILL, DEFAULT_MIN_FILL);
+
+		List<Chunk> chunks = new ArrayList<>();
+		CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+		for (FileStatus file : files) {
+			CompressionCodec codec = codecs.getCodec(file.getPath());
+			addChunks(chunks, file, codec == null || codec instanceof SplittableCompressionCodec,
+					compressionRatio(conf, codec), targetSize, conf);
+		}
+		return pack(chunks, targetSize, maxFiles, minFill);
+	}
+
+	/**
+	 * @param conf	the configuration
+	 * @param codec	the file's codec, or <code>null</code> if it isn't compressed
+	 * @return		the estimated ratio of uncompressed to compressed bytes
+	 */
+	static float compressionRatio(Configuration conf, CompressionCodec codec) {
+		if (codec == null) {
+			return 1f;
+		}
+		float ratio = conf.getFloat(CONF_KEY_RATIO_PREFIX + codec.getDefaultExtension().replaceFirst("^\\.", ""),
+				conf.getFloat(CONF_KEY_DEFAULT_RATIO, DEFAULT_COMPRESSION_RATIO));
+		return ratio > 0? ratio : 1f;
+	}
+
+	/**
+	 * Divides a file into chunks on block boundaries (further divided to the
+	 * target size), or a single chunk if it cannot be split.
+	 */
+	private static void addChunks(List<Chunk> chunks, FileStatus file, boolean splitable,
+			float ratio, long targetSize, Configuration conf) throws IOException {
+		BlockLocation[] blocks = file instanceof LocatedFileStatus
+				? ((LocatedFileStatus)file).getBlockLocations()
+				: file.getPath().getFileSystem(conf).getFileBlockLocations(file, 0, file.getLen());
+		if (blocks == null || blocks.length == 0) {
+			blocks = new BlockLocation[] { new BlockLocation(null, null, 0, file.getLen()) };
+		}
+		if (!splitable) {
+			chunks.add(new Chunk(file.getPath(), 0, file.getLen(), ratio, blocks[0]));
+			return;
+		}
+		long chunkSize = Math.max(1, (long)(targetSize / ratio));
+		for (BlockLocation block : blocks) {
+			long end = block.getOffset() + block.getLength();
+			for (long start = block.getOffset(); start < end; start += chunkSize) {
+				chunks.add(new Chunk(file.getPath(), start, Math.min(chunkSize, end - start), ratio, block));
+			}
+		}
+	}
+
+	static List<InputSplit> pack(List<Chunk> chunks, long targetSize, int maxFiles, float minFill)
+			throws IOException {
+		Map<String, List<Chunk>> byNode = new LinkedHashMap<>();
+		Map<String, List<Chunk>> byRack = new LinkedHashMap<>();
+		for (Chunk chunk : chunks) {
+			for (String host : chunk.hosts) {
+				group(byNode, host, chunk);
+			}
+			for (String rack : chunk.racks) {
+				group(byRack, rack, chunk);
+			}
+		}
+
+		List<InputSplit> splits = new ArrayList<>();
+		long minBytes = (long)(targetSize * minFill);
+		int nodeLocal = packGroups(splits, byNode.values(), targetSize, maxFiles, minBytes);
+		int rackLocal = packGroups(splits, byRack.values(), targetSize, maxFiles, minBytes);
+
+		List<Chunk> remaining = new ArrayList<>();
+		for (Chunk chunk : chunks) {
+			if (!chunk.assigned) {
+				remaining.add(chunk);
+			}
+		}
+		packGroups(splits, Collections.singletonList(remaining), targetSize, maxFiles, 0);
+
+		logSummary(splits, nodeLocal, rackLocal);
+		return splits;
+	}
+
+	private static void group(Map<String, List<Chunk>> groups, String key, Chunk chunk) {
+		List<Chunk> group = groups.get(key);
+		if (group == null) {
+			group = new ArrayList<>();
+			groups.put(key, group);
+		}
+		group.add(chunk);
+	}
+
+	/**
+	 * Fills splits from each group in turn until a group's next split would fall
+	 * short of <code>minBytes</code>.
+	 * @return	the number of splits created
+	 */
+	private static int packGroups(List<InputSplit> splits, Collection<List<Chunk>> groups,
+			long targetSize, int maxFiles, long minBytes) throws IOException {
+		int created = 0;
+		for (List<Chunk> group : groups) {
+			Collections.sort(group, LARGEST_FIRST);
+			LinkedList<Chunk> available = new LinkedList<>(group);
+			while (true) {
+				List<Chunk> split = fill(available, targetSize, maxFiles);
+				if (split.isEmpty() || weight(split) < minBytes) {
+					break;
+				}
+				for (Chunk chunk : split) {
+					chunk.assigned = true;
+				}
+				splits.add(toSplit(split));
+				created++;
+			}
+		}
+		return created;
+	}
+
+	/**
+	 * Selects chunks largest first for a single split, removing them from the
+	 * list along with any chunks found to be assigned elsewhere.
+	 */
+	private static List<Chunk> fill(LinkedList<Chunk> available, long targetSize, int maxFiles) {
+		List<Chunk> split = new ArrayList<>();
+		long bytes = 0;
+		Iterator<Chunk> it = available.iterator();
+		while (it.hasNext() && split.size() < maxFiles && bytes < targetSize) {
+			Chunk chunk = it.next();
+			if (chunk.assigned) {
+				it.remove();
+			}
+			else if (split.isEmpty() || bytes + chunk.weight <= targetSize) {
+				split.add(chunk);
+				bytes += chunk.weight;
+				it.remove();
+			}
+			else if (targetSize - bytes < available.getLast().weight) {
+				// Sorted largest first, so nothing further will fit
+				break;
+			}
+		}
+		return split;
+	}
+
+	private static long weight(List<Chunk> chunks) {
+		long weight = 0;
+		for (Chunk chunk : chunks) {
+			weight += chunk.weight;
+		}
+		return weight;
+	}
+
+	/**
+	 * Creates the split, locating it on the hosts holding the most of its bytes.
+	 */
+	private static CombineFileSplit toSplit(List<Chunk> chunks) {
+		Path[] paths = new Path[chunks.size()];
+		long[] starts = new long[chunks.size()];
+		long[] lengths = new long[chunks.size()];
+		final Map<String, Long> hostBytes = new HashMap<>();
+		for (int i = 0; i < chunks.size(); i++) {
+			Chunk chunk = chunks.get(i);
+			paths[i] = chunk.path;
+			starts[i] = chunk.start;
+			lengths[i] = chunk.length;
+			for (String host : chunk.hosts) {
+				Long bytes = hostBytes.get(host);
+				hostBytes.put(host, (bytes == null? 0 : bytes) + chunk.length);
+			}
+		}
+		List<String> hosts = new ArrayList<>(hostBytes.keySet());
+		Collections.sort(hosts, new Comparator<String>() {
+			@Override
+			public int compare(String h1, String h2) {
+				return Long.compare(hostBytes.get(h2), hostBytes.get(h1));
+			}
+		});
+		hosts = hosts.subList(0, Math.min(MAX_LOCATIONS, hosts.size()));
+		return new CombineFileSplit(paths, starts, lengths, hosts.toArray(new String[hosts.size()]));
+	}
+
+	private static void logSummary(List<InputSplit> splits, int nodeLocal, int rackLocal) throws IOException {
+		if (splits.isEmpty()) {
+			return;
+		}
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		long total = 0;
+		for (InputSplit split : splits) {
+			long length = ((CombineFileSplit)split).getLength();
+			min = Math.min(min, length);
+			max = Math.max(max, length);
+			total += length;
+		}
+		logger().info("Packed [" + total + "] bytes into [" + splits.size() + "] splits of ["
+				+ min + ".." + max + "] bytes (mean [" + total / splits.size() + "]): ["
+				+ nodeLocal + "] node-local, [" + rackLocal + "] rack-local, ["
+				+ (splits.size() - nodeLocal - rackLocal) + "] unplaced.");
+	}
+
+	/**
+	 * A file, or a block range of one, with its estimated uncompressed size
+	 * and the hosts and racks holding it.
+	 */
+	static final class Chunk {
+		final Path path;
+		final long start;
+		final long length;
+		final long weight;
+		final String[] hosts;
+		final String[] racks;
+		boolean assigned;
+
+		Chunk(Path path, long start, long length, float ratio, BlockLocation block) throws IOException {
+			this.path = path;
+			this.start = start;
+			this.length = length;
+			this.weight = (long)(length * ratio);
+			this.hosts = block.getHosts();
+			this.racks = racks(block.getTopologyPaths());
+		}
+
+		private static String[] racks(String[] topologyPaths) {
+			// Topology paths are /rack/host:port, with replicas often sharing a rack
+			Set<String> racks = new LinkedHashSet<>();
+			for (String topologyPath : topologyPaths) {
+				Path parent = new Path(topologyPath).getParent();
+				if (parent != null) {
+					racks.add(parent.toString());
+				}
+			}
+			return racks.toArray(new String[racks.size()]);
+		}
+	}
+
+	private static Logger logger() {
+		return LoggerFactory.getLogger(SplitPacker.class);
+	}
+}
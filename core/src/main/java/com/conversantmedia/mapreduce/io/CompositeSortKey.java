@@ -28,8 +28,11 @@ import java.io.IOException;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.hadoop.util.ReflectionUtils;
 
@@ -151,13 +154,30 @@ public class CompositeSortKey<G extends WritableComparable, S extends WritableCo
 
 	/**
 	 * Comparator for sorting the composite key based on the natural order of both the partition (group) key
-	 * and then the sort key.
+	 * and then the sort key. Subclasses overriding {@link #compare(CompositeSortKey, CompositeSortKey)}
+	 * have their serialized keys deserialized and compared with it.
 	 */
 	public static class NaturalSortComparator<G extends WritableComparable, S extends WritableComparable> extends CompositeSortKeyComparator<G, S> {
 		@Override
 		public int compare(CompositeSortKey<G, S> key1, CompositeSortKey<G, S> key2) {
 			return key1.compareTo(key2);
 		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			// The raw comparison only matches this class's own ordering
+			if (getClass() != NaturalSortComparator.class || !isRawComparable()) {
+				return super.compare(b1, s1, l1, b2, s2, l2);
+			}
+			if (isNormalized()) {
+				return WritableComparator.compareBytes(b1, s1, l1, b2, s2, l2);
+			}
+			int compare = compareGroupBytes(b1, s1, l1, b2, s2, l2);
+			if (compare == 0) {
+				compare = compareSortBytes(b1, s1, l1, b2, s2, l2);
+			}
+			return compare;
+		}
 	}
 
 	/**
@@ -175,6 +195,18 @@ public class CompositeSortKey<G extends WritableComparable, S extends WritableCo
 			}
 			return compare;
 		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			if (!isRawComparable()) {
+				return super.compare(b1, s1, l1, b2, s2, l2);
+			}
+			int compare = compareGroupBytes(b1, s1, l1, b2, s2, l2);
+			if (compare == 0) {
+				compare = compareSortBytes(b1, s1, l1, b2, s2, l2) * -1;
+			}
+			return compare;
+		}
 	}
 
 	/**
@@ -188,6 +220,14 @@ public class CompositeSortKey<G extends WritableComparable, S extends WritableCo
 		public int compare(CompositeSortKey<G, S> key1, CompositeSortKey<G, S> key2) {
 			return key1.groupKey.compareTo(key2.groupKey);
 		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			if (!isGroupRawComparable()) {
+				return super.compare(b1, s1, l1, b2, s2, l2);
+			}
+			return compareGroupBytes(b1, s1, l1, b2, s2, l2);
+		}
 	}
 
 	/**
@@ -204,7 +244,33 @@ public class CompositeSortKey<G extends WritableComparable, S extends WritableCo
 	}
 
 	/**
-	 * This class handles key creation for eventual sorting by partition and sort keys
+	 * Partitioner hashing the serialized bytes of the group key with murmur hash rather
+	 * than calling <code>hashCode()</code> on it. Bytes are taken directly from
+	 * {@link org.apache.hadoop.io.BinaryComparable} group keys (i.e. <code>Text</code>)
+	 * and otherwise written to a reused buffer.
+	 *
+	 * @param <T>	the value type
+	 */
+	public static final class GroupHashPartitioner<T> extends Partitioner<CompositeSortKey, T> {
+
+		private final DataOutputBuffer buffer = new DataOutputBuffer();
+
+		@Override
+		public int getPartition(CompositeSortKey key, T value, int numPartitions) {
+			int hash = RawWritableUtil.murmurHash(key.getGroupKey(), buffer);
+			return (hash & Integer.MAX_VALUE) % numPartitions;
+		}
+	}
+
+	/**
+	 * This class handles key creation for eventual sorting by partition and sort keys.
+	 * When both key types have a registered {@link org.apache.hadoop.io.WritableComparator}
+	 * and a known serialized length (see {@link RawWritableUtil}), subclasses may compare
+	 * the serialized bytes directly rather than deserializing each key. Keys written with
+	 * the {@link CompositeSortKeySerialization.Layout#GROUP_LENGTH_PREFIXED} layout need
+	 * only a raw comparator, since the group key length is part of the serialized form,
+	 * and keys written with the {@link CompositeSortKeySerialization.Layout#NORMALIZED}
+	 * layout are compared as unsigned bytes.
 	 *
 	 * @param <G> Partition or Group Key
 	 * @param <S> Sort Key
@@ -219,6 +285,15 @@ public class CompositeSortKey<G extends WritableComparable, S extends WritableCo
 		private Class<G> groupKeyClass;
 		private Class<S> sortKeyClass;
 
+		private RawComparator<G> groupKeyComparator;
+		private RawComparator<S> sortKeyComparator;
+		private RawWritableUtil.SerializedLength groupKeyLength;
+		private boolean groupLengthPrefixed;
+
+		// Only set for the normalized layout
+		private NormalizedKeyFormat<G> groupKeyFormat;
+		private NormalizedKeyFormat<S> sortKeyFormat;
+
 		public CompositeSortKeyComparator() {
 			buffer = new DataInputBuffer();
 		}
@@ -238,24 +313,123 @@ public class CompositeSortKey<G extends WritableComparable, S extends WritableCo
 				this.sortKeyClass = (Class<S>) conf.getClass(CompositeSortKeySerialization.CONF_KEY_SORTKEY_CLASS, null);
 				key1 = newKey();
 				key2 = newKey();
+				groupKeyComparator = RawWritableUtil.rawComparatorFor(groupKeyClass);
+				sortKeyComparator = RawWritableUtil.rawComparatorFor(sortKeyClass);
+				groupKeyLength = RawWritableUtil.serializedLengthFor(groupKeyClass);
+				CompositeSortKeySerialization.Layout layout = CompositeSortKeySerialization.getLayout(conf);
+				groupLengthPrefixed = layout == CompositeSortKeySerialization.Layout.GROUP_LENGTH_PREFIXED;
+				if (layout == CompositeSortKeySerialization.Layout.NORMALIZED) {
+					groupKeyFormat = NormalizedKeyFormat.forClass(groupKeyClass);
+					sortKeyFormat = NormalizedKeyFormat.forClass(sortKeyClass);
+				}
 			}
 			super.setConf(conf);
 		}
 
+		/**
+		 * @return	<code>true</code> if the serialized group keys may be compared without deserializing
+		 */
+		protected boolean isGroupRawComparable() {
+			return isNormalized() || groupLengthPrefixed || groupKeyComparator != null && groupKeyLength != null;
+		}
+
+		/**
+		 * @return	<code>true</code> if both serialized keys may be compared, in their natural
+		 * 			order, without deserializing
+		 */
+		protected boolean isRawComparable() {
+			return isNormalized() || groupKeyComparator != null && sortKeyComparator != null
+					&& (groupLengthPrefixed || groupKeyLength != null);
+		}
+
+		/**
+		 * @return	<code>true</code> if the keys were written in the {@link NormalizedKeyFormat}, in which
+		 * 			case the serialized keys sort in their natural order as unsigned bytes.
+		 */
+		protected boolean isNormalized() {
+			return groupKeyFormat != null;
+		}
+
+		/**
+		 * Compares the serialized group keys using the group key type's raw comparator.
+		 * If the group key type has none, but the keys were written with the
+		 * {@link CompositeSortKeySerialization.Layout#GROUP_LENGTH_PREFIXED} layout, the
+		 * group key bytes are compared directly, which is only suitable for grouping.
+		 * Only valid when {@link #isGroupRawComparable()}.
+		 */
+		protected int compareGroupBytes(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			if (isNormalized()) {
+				return groupKeyFormat.compare(b1, s1, b2, s2);
+			}
+			try {
+				int go1 = s1 + groupKeyOffset(b1, s1);
+				int go2 = s2 + groupKeyOffset(b2, s2);
+				int gl1 = groupKeyLength(b1, s1);
+				int gl2 = groupKeyLength(b2, s2);
+				if (groupKeyComparator == null) {
+					return WritableComparator.compareBytes(b1, go1, gl1, b2, go2, gl2);
+				}
+				return groupKeyComparator.compare(b1, go1, gl1, b2, go2, gl2);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Compares the serialized sort keys, which immediately follow the group keys,
+		 * using the sort key type's raw comparator. Only valid when {@link #isRawComparable()}.
+		 */
+		protected int compareSortBytes(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				int gl1 = groupKeyOffset(b1, s1) + groupKeyLength(b1, s1);
+				int gl2 = groupKeyOffset(b2, s2) + groupKeyLength(b2, s2);
+				if (isNormalized()) {
+					return WritableComparator.compareBytes(b1, s1 + gl1, l1 - gl1, b2, s2 + gl2, l2 - gl2);
+				}
+				return sortKeyComparator.compare(b1, s1 + gl1, l1 - gl1, b2, s2 + gl2, l2 - gl2);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		// Bytes preceding the group key (its length prefix, if any)
+		private int groupKeyOffset(byte[] b, int s) {
+			return groupLengthPrefixed? WritableUtils.decodeVIntSize(b[s]) : 0;
+		}
+
+		private int groupKeyLength(byte[] b, int s) throws IOException {
+			if (isNormalized()) {
+				return groupKeyFormat.length(b, s);
+			}
+			return groupLengthPrefixed? WritableComparator.readVInt(b, s) : groupKeyLength.length(b, s);
+		}
+
 		@Override
 		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
 			try {
 				buffer.reset(b1, s1, l1);
-				  key1.readFields(buffer);
+				readKey(key1, buffer);
 
-				  buffer.reset(b2, s2, l2);
-				  key2.readFields(buffer);
+				buffer.reset(b2, s2, l2);
+				readKey(key2, buffer);
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
 			return compare(key1, key2);
 		}
 
+		private void readKey(CompositeSortKey<G, S> key, DataInputBuffer in) throws IOException {
+			if (isNormalized()) {
+				groupKeyFormat.readFields(key.getGroupKey(), in);
+				sortKeyFormat.readFields(key.getSortKey(), in);
+				return;
+			}
+			if (groupLengthPrefixed) {
+				WritableUtils.readVInt(in);
+			}
+			key.readFields(in);
+		}
+
 		@Override
 		public abstract int compare(CompositeSortKey<G, S> o1, CompositeSortKey<G, S> o2);
 
@@ -31,12 +31,17 @@ import java.util.Collection;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.io.serializer.Deserializer;
 import org.apache.hadoop.io.serializer.Serialization;
 import org.apache.hadoop.io.serializer.Serializer;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.util.ReflectionUtils;
 
 /**
  * Encapsulates the serialization functionality for a job 
@@ -50,6 +55,26 @@ public class CompositeSortKeySerialization<G extends WritableComparable<G>, S ex
 
 	public static final String CONF_KEY_GROUPKEY_CLASS = "com.conversantmedia.mapreduce.io.compositekey.groupclass";
 	public static final String CONF_KEY_SORTKEY_CLASS = "com.conversantmedia.mapreduce.io.compositekey.sortclass";
+	public static final String CONF_KEY_LAYOUT = "com.conversantmedia.mapreduce.io.compositekey.layout";
+
+	/**
+	 * The binary layout of the serialized keys.
+	 */
+	public static enum Layout {
+		/** The group key followed by the sort key. This is the default. */
+		STANDARD,
+		/**
+		 * A vint length, then the group key, then the sort key. Allows comparators
+		 * to locate the group key bytes for any group key type.
+		 */
+		GROUP_LENGTH_PREFIXED,
+		/**
+		 * The group key then the sort key, each in its {@link NormalizedKeyFormat}, so that
+		 * serialized keys sort as unsigned bytes. Only available when both key types
+		 * are {@link NormalizedKeyFormat#isSupported supported}.
+		 */
+		NORMALIZED
+	}
 
 	private Serializer<CompositeSortKey<G, S>> serializer;
 	private Deserializer<CompositeSortKey<G, S>> deserializer;
@@ -70,7 +95,7 @@ public class CompositeSortKeySerialization<G extends WritableComparable<G>, S ex
 			Class<CompositeSortKey<G, S>> arg0) {
 		if (deserializer == null) {
 			deserializer = new CompositeSortKeyDeserializer(getConf().getClass(CONF_KEY_GROUPKEY_CLASS, null),
-					getConf().getClass(CONF_KEY_SORTKEY_CLASS, null));
+					getConf().getClass(CONF_KEY_SORTKEY_CLASS, null), getLayout(getConf()), getConf());
 		}
 		return deserializer;
 	}
@@ -79,13 +104,15 @@ public class CompositeSortKeySerialization<G extends WritableComparable<G>, S ex
 	public Serializer<CompositeSortKey<G, S>> getSerializer(
 			Class<CompositeSortKey<G, S>> arg0) {
 		if (serializer == null) {
-			serializer = new CompositeSortKeySerializer<>();
+			serializer = new CompositeSortKeySerializer<>(getLayout(getConf()));
 		}
 		return serializer;
 	}
 
 	/**
-	 * Convenience method to configure the job for using the composite key.
+	 * Convenience method to configure the job for using the composite key. Uses the
+	 * {@link Layout#NORMALIZED} layout if both key types support it, otherwise the
+	 * {@link Layout#STANDARD} layout.
 	 * @param job				the job using this serializer
 	 * @param groupKeyClass		the key type used for grouping
 	 * @param sortKeyClass		the key type used for sorting
@@ -93,10 +120,31 @@ public class CompositeSortKeySerialization<G extends WritableComparable<G>, S ex
 	@SuppressWarnings("rawtypes")
 	public static void configureMapOutputKey(Job job, Class<? extends WritableComparable> groupKeyClass,
 			Class<? extends WritableComparable> sortKeyClass) {
+		Layout layout = NormalizedKeyFormat.isSupported(groupKeyClass) && NormalizedKeyFormat.isSupported(sortKeyClass)?
+				Layout.NORMALIZED : Layout.STANDARD;
+		configureMapOutputKey(job, groupKeyClass, sortKeyClass, layout);
+	}
+
+	/**
+	 * Convenience method to configure the job for using the composite key.
+	 * @param job				the job using this serializer
+	 * @param groupKeyClass		the key type used for grouping
+	 * @param sortKeyClass		the key type used for sorting
+	 * @param layout			the binary layout for the serialized keys
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void configureMapOutputKey(Job job, Class<? extends WritableComparable> groupKeyClass,
+			Class<? extends WritableComparable> sortKeyClass, Layout layout) {
+		if (layout == Layout.NORMALIZED
+				&& !(NormalizedKeyFormat.isSupported(groupKeyClass) && NormalizedKeyFormat.isSupported(sortKeyClass))) {
+			throw new IllegalArgumentException("No normalized key format for ["
+					+ groupKeyClass.getName() + ", " + sortKeyClass.getName() + "]");
+		}
 
 		// First, setup our classes...
 		job.getConfiguration().set(CONF_KEY_GROUPKEY_CLASS, groupKeyClass.getName());
 		job.getConfiguration().set(CONF_KEY_SORTKEY_CLASS, sortKeyClass.getName());
+		job.getConfiguration().setEnum(CONF_KEY_LAYOUT, layout);
 
 		// Set this class as our map output key
 		job.setMapOutputKeyClass(CompositeSortKey.class);
@@ -114,6 +162,14 @@ public class CompositeSortKeySerialization<G extends WritableComparable<G>, S ex
 
 	}
 
+	/**
+	 * @param conf	the job configuration
+	 * @return		the configured key layout, {@link Layout#STANDARD} if not set
+	 */
+	public static Layout getLayout(Configuration conf) {
+		return conf.getEnum(CONF_KEY_LAYOUT, Layout.STANDARD);
+	}
+
 	/**
 	 * Handles serialization of the composite sort keys.
 	 *
@@ -125,9 +181,43 @@ public class CompositeSortKeySerialization<G extends WritableComparable<G>, S ex
 
 		private DataOutputStream out;
 
+		private final Layout layout;
+
+		// Holds the group key to determine its length
+		private final DataOutputBuffer groupKeyBuffer = new DataOutputBuffer();
+
+		// Resolved from the first key serialized
+		private NormalizedKeyFormat<G> groupKeyFormat;
+		private NormalizedKeyFormat<S> sortKeyFormat;
+
+		public CompositeSortKeySerializer() {
+			this(Layout.STANDARD);
+		}
+
+		public CompositeSortKeySerializer(Layout layout) {
+			this.layout = layout;
+		}
+
 		@Override
 		public void serialize(CompositeSortKey<G, S> key) throws IOException {
-			key.getGroupKey().write(this.out);
+			if (layout == Layout.GROUP_LENGTH_PREFIXED) {
+				groupKeyBuffer.reset();
+				key.getGroupKey().write(groupKeyBuffer);
+				WritableUtils.writeVInt(this.out, groupKeyBuffer.getLength());
+				this.out.write(groupKeyBuffer.getData(), 0, groupKeyBuffer.getLength());
+			}
+			else if (layout == Layout.NORMALIZED) {
+				if (groupKeyFormat == null) {
+					groupKeyFormat = normalizedFormatFor(key.getGroupKey().getClass());
+					sortKeyFormat = normalizedFormatFor(key.getSortKey().getClass());
+				}
+				groupKeyFormat.write(key.getGroupKey(), this.out);
+				sortKeyFormat.write(key.getSortKey(), this.out);
+				return;
+			}
+			else {
+				key.getGroupKey().write(this.out);
+			}
 			key.getSortKey().write(this.out);
 		}
 
@@ -142,8 +232,20 @@ public class CompositeSortKeySerialization<G extends WritableComparable<G>, S ex
 		}
 	}
 
+	private static <W extends Writable> NormalizedKeyFormat<W> normalizedFormatFor(Class<?> c) throws IOException {
+		NormalizedKeyFormat<W> format = NormalizedKeyFormat.forClass(c);
+		if (format == null) {
+			throw new IOException("No normalized key format for [" + c.getName() + "]");
+		}
+		return format;
+	}
+
 	/**
-	 * Handles deserialization of the sort keys.
+	 * Handles deserialization of the sort keys. A key passed in for reuse is always
+	 * filled in place, along with its group and sort key instances, so reading a key
+	 * into a reused instance allocates nothing once the component buffers have grown
+	 * to fit. Missing components are created with {@link ReflectionUtils#newInstance},
+	 * which caches the constructor per class.
 	 *
 	 * @param <G> Grouping/Partitioning key type
 	 * @param <S> Sorting key type
@@ -156,9 +258,35 @@ public class CompositeSortKeySerialization<G extends WritableComparable<G>, S ex
 		private final Class<G> groupKeyClass;
 		private final Class<S> sortKeyClass;
 
+		private final Layout layout;
+
+		private final Configuration conf;
+
+		private final NormalizedKeyFormat<G> groupKeyFormat;
+		private final NormalizedKeyFormat<S> sortKeyFormat;
+
 		public CompositeSortKeyDeserializer(Class<G> groupKeyClass, Class<S> sortKeyClass) {
+			this(groupKeyClass, sortKeyClass, Layout.STANDARD);
+		}
+
+		public CompositeSortKeyDeserializer(Class<G> groupKeyClass, Class<S> sortKeyClass, Layout layout) {
+			this(groupKeyClass, sortKeyClass, layout, null);
+		}
+
+		public CompositeSortKeyDeserializer(Class<G> groupKeyClass, Class<S> sortKeyClass, Layout layout,
+				Configuration conf) {
 			this.groupKeyClass = groupKeyClass;
 			this.sortKeyClass = sortKeyClass;
+			this.layout = layout;
+			this.conf = conf;
+			if (layout == Layout.NORMALIZED) {
+				this.groupKeyFormat = NormalizedKeyFormat.forClass(groupKeyClass);
+				this.sortKeyFormat = NormalizedKeyFormat.forClass(sortKeyClass);
+			}
+			else {
+				this.groupKeyFormat = null;
+				this.sortKeyFormat = null;
+			}
 		}
 
 		@Override
@@ -168,32 +296,47 @@ public class CompositeSortKeySerialization<G extends WritableComparable<G>, S ex
 				reuse = new CompositeSortKey<>();
 			}
 
-			if (reuse.getGroupKey() == null) {
-				try {
-					reuse.setGroupKey(groupKeyClass.newInstance());
-				} catch (InstantiationException | IllegalAccessException e) {
-					throw new IOException("Unable to instantiate '" + groupKeyClass + "'");
-				}
+			G groupKey = reuse.getGroupKey();
+			if (groupKey == null) {
+				groupKey = newInstance(groupKeyClass);
+				reuse.setGroupKey(groupKey);
 			}
 
-			if (reuse.getSortKey() == null) {
-				try {
-					reuse.setSortKey(sortKeyClass.newInstance());
-				} catch (InstantiationException | IllegalAccessException e) {
-					throw new IOException("Unable to instantiate '" + sortKeyClass + "'");
-				}
+			S sortKey = reuse.getSortKey();
+			if (sortKey == null) {
+				sortKey = newInstance(sortKeyClass);
+				reuse.setSortKey(sortKey);
+			}
+
+			if (layout == Layout.NORMALIZED) {
+				groupKeyFormat.readFields(groupKey, this.in);
+				sortKeyFormat.readFields(sortKey, this.in);
+				return reuse;
+			}
+			if (layout == Layout.GROUP_LENGTH_PREFIXED) {
+				// Group key length is only needed by the raw comparators
+				WritableUtils.readVInt(this.in);
 			}
 
 			// Use the keys to deserialize...
-			reuse.getGroupKey().readFields(this.in);
-			reuse.getSortKey().readFields(this.in);
+			groupKey.readFields(this.in);
+			sortKey.readFields(this.in);
 
 			return reuse;
 		}
 
+		private <T> T newInstance(Class<T> c) throws IOException {
+			try {
+				return ReflectionUtils.newInstance(c, conf);
+			} catch (RuntimeException e) {
+				throw new IOException("Unable to instantiate '" + c + "'", e);
+			}
+		}
+
 		@Override
 		public void open(InputStream in) throws IOException {
-			this.in = new DataInputStream(in);
+			// Keep buffers as-is so the normalized formats may read their backing array
+			this.in = in instanceof DataInputBuffer? (DataInputBuffer)in : new DataInputStream(in);
 		}
 
 		@Override
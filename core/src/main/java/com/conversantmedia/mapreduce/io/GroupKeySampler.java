@@ -0,0 +1,264 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.conversantmedia.mapreduce.tool.AnnotatedDelegatingMapper;
+import com.conversantmedia.mapreduce.tool.annotation.handler.MaraAnnotationUtil;
+
+/**
+ * Samples the {@link CompositeSortKey} group keys of a job's map output at submit
+ * time, and distributes the files the sampling partitioners derive from them.
+ * <p>
+ * The job's mapper is run in the submitting JVM over the leading records of
+ * evenly spaced input splits, so input already ordered by group key within each
+ * split won't sample well. Distributed resources are only injected in tasks, so
+ * sampling fails fast on a mapper declaring <code>@Resource</code> fields.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+final class GroupKeySampler {
+
+	private GroupKeySampler() {}
+
+	/**
+	 * Runs the job's mapper over records from up to <code>maxSplits</code>
+	 * evenly spaced input splits and collects the emitted group keys.
+	 * @param job		the configured job
+	 * @param samples	the number of records to read
+	 * @param maxSplits	the maximum number of splits to read them from
+	 * @return			copies of the group keys emitted
+	 * @throws IllegalStateException	if the mapper declares <code>@Resource</code> fields
+	 */
+	static List<WritableComparable> sample(Job job, int samples, int maxSplits)
+			throws IOException, InterruptedException {
+		Configuration conf = job.getConfiguration();
+		List<WritableComparable> keys = new ArrayList<>();
+		try {
+			checkNoResources(conf, job.getMapperClass());
+			InputFormat inputFormat = ReflectionUtils.newInstance(job.getInputFormatClass(), conf);
+			List<InputSplit> splits = inputFormat.getSplits(job);
+			if (splits.isEmpty()) {
+				return keys;
+			}
+			int splitCount = Math.min(maxSplits, splits.size());
+			int recordsPerSplit = Math.max(1, samples / splitCount);
+
+			for (int i = 0; i < splitCount; i++) {
+				InputSplit split = splits.get(i * splits.size() / splitCount);
+				TaskAttemptContext taskContext = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+				RecordReader reader = new LimitedRecordReader(
+						inputFormat.createRecordReader(split, taskContext), recordsPerSplit);
+				try {
+					reader.initialize(split, taskContext);
+					MapContext mapContext = new MapContextImpl(conf, taskContext.getTaskAttemptID(), reader,
+							new SamplingRecordWriter(keys, conf), null,
+							new TaskAttemptContextImpl.DummyReporter(), split);
+					Mapper mapper = ReflectionUtils.newInstance(job.getMapperClass(), conf);
+					mapper.run(new WrappedMapper().getMapContext(mapContext));
+				}
+				finally {
+					reader.close();
+				}
+			}
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		return keys;
+	}
+
+	// Resources are injected by the task side aspect only, so a mapper run here would see nulls
+	private static void checkNoResources(Configuration conf, Class<? extends Mapper> mapperClass) {
+		if (mapperClass == AnnotatedDelegatingMapper.class) {
+			mapperClass = conf.getClass(AnnotatedDelegatingMapper.CONFKEY_DELEGATE_MAPPER_CLASS,
+					Mapper.class, Mapper.class);
+		}
+		for (Class<?> clazz = mapperClass; clazz != null; clazz = clazz.getSuperclass()) {
+			List<Field> fields = MaraAnnotationUtil.INSTANCE.findAnnotatedFields(clazz, Resource.class);
+			if (!fields.isEmpty()) {
+				throw new IllegalStateException("Unable to sample group keys: mapper [" + mapperClass.getName()
+						+ "] declares @Resource field [" + fields.get(0).getName()
+						+ "], which is only injected in map tasks.");
+			}
+		}
+	}
+
+	/**
+	 * @param conf		the job configuration
+	 * @param confKey	configuration key naming the file
+	 * @param dir		directory under <code>hadoop.tmp.dir</code> for unnamed files
+	 * @return			the configured file, or a new one if not set
+	 */
+	static Path sideFile(Configuration conf, String confKey, String dir) {
+		String name = conf.get(confKey);
+		if (name == null) {
+			return new Path(conf.get("hadoop.tmp.dir"), dir + "/" + UUID.randomUUID() + ".seq");
+		}
+		return new Path(name);
+	}
+
+	/**
+	 * Places the file on the distributed cache and records it under the configuration
+	 * key. A file not previously configured is removed when the file system is closed.
+	 * @param job		the job to configure
+	 * @param file		the file to distribute
+	 * @param confKey	configuration key naming the file
+	 * @return			the qualified file
+	 */
+	static Path distribute(Job job, Path file, String confKey) throws IOException {
+		Configuration conf = job.getConfiguration();
+		FileSystem fs = file.getFileSystem(conf);
+		file = fs.makeQualified(file);
+		if (conf.get(confKey) == null) {
+			fs.deleteOnExit(file);
+		}
+		conf.set(confKey, file.toString());
+		job.addCacheFile(file.toUri());
+		return file;
+	}
+
+	/**
+	 * @param conf	the task configuration
+	 * @param file	the distributed file
+	 * @return		the copy localized by the distributed cache if available,
+	 * 				otherwise the file itself
+	 */
+	static Path localCopy(Configuration conf, Path file) {
+		String[] localFiles = conf.getStrings(MRJobConfig.CACHE_LOCALFILES);
+		if (localFiles != null) {
+			for (String localFile : localFiles) {
+				Path local = new Path(localFile);
+				if (StringUtils.equals(local.getName(), file.getName())) {
+					return local;
+				}
+			}
+		}
+		return file;
+	}
+
+	static Class<? extends WritableComparable> groupKeyClass(Configuration conf) {
+		Class<? extends WritableComparable> groupKeyClass = conf.getClass(
+				CompositeSortKeySerialization.CONF_KEY_GROUPKEY_CLASS, null, WritableComparable.class);
+		if (groupKeyClass == null) {
+			throw new IllegalStateException("No group key class configured for " + CompositeSortKey.class.getName());
+		}
+		return groupKeyClass;
+	}
+
+	/**
+	 * Stops reading after a number of records.
+	 */
+	private static final class LimitedRecordReader<K, V> extends RecordReader<K, V> {
+
+		private final RecordReader<K, V> reader;
+		private final int limit;
+		private int count;
+
+		LimitedRecordReader(RecordReader<K, V> reader, int limit) {
+			this.reader = reader;
+			this.limit = limit;
+		}
+
+		@Override
+		public void initialize(InputSplit split, TaskAttemptContext context)
+				throws IOException, InterruptedException {
+			reader.initialize(split, context);
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			return count++ < limit && reader.nextKeyValue();
+		}
+
+		@Override
+		public K getCurrentKey() throws IOException, InterruptedException {
+			return reader.getCurrentKey();
+		}
+
+		@Override
+		public V getCurrentValue() throws IOException, InterruptedException {
+			return reader.getCurrentValue();
+		}
+
+		@Override
+		public float getProgress() throws IOException, InterruptedException {
+			return reader.getProgress();
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Collects copies of the group keys written by the mapper.
+	 */
+	private static final class SamplingRecordWriter extends RecordWriter<Object, Object> {
+
+		private final List<WritableComparable> samples;
+		private final Configuration conf;
+
+		SamplingRecordWriter(List<WritableComparable> samples, Configuration conf) {
+			this.samples = samples;
+			this.conf = conf;
+		}
+
+		@Override
+		public void write(Object key, Object value) throws IOException {
+			if (!(key instanceof CompositeSortKey)) {
+				throw new IOException("Sampling requires " + CompositeSortKey.class.getSimpleName() + " map output keys");
+			}
+			samples.add(WritableUtils.clone(((CompositeSortKey)key).getGroupKey(), conf));
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) {}
+	}
+}
@@ -0,0 +1,185 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only, memory-mapped view of a local file of any size. Pages are loaded
+ * on demand and shared through the OS page cache by every process mapping the
+ * file, so task JVMs on a node reading the same distributed cache file don't
+ * each hold a copy on their heaps.
+ * <p>
+ * The file is mapped as a series of overlapping segments, since a single
+ * {@link MappedByteBuffer} cannot exceed 2GB. Multi-byte values are big-endian,
+ * as written by {@link java.io.DataOutput}. Instances are safe for concurrent
+ * reads. The mapping is released when the instance is garbage collected.
+ * <p>
+ * A field of this type annotated with <code>@Resource</code> is injected with a
+ * mapping of the distributed file, as is a field of type
+ * {@link MappedByteBuffer} (for files under 2GB).
+ */
+public final class MappedFile {
+
+	private static final int SEGMENT_BITS = 30;
+
+	// Lets a value of up to 8 bytes be read from the segment it starts in
+	private static final int OVERLAP = 8;
+
+	private final MappedByteBuffer[] segments;
+
+	private final int segmentBits;
+
+	private final long segmentMask;
+
+	private final long length;
+
+	private MappedFile(MappedByteBuffer[] segments, int segmentBits, long length) {
+		this.segments = segments;
+		this.segmentBits = segmentBits;
+		this.segmentMask = (1L << segmentBits) - 1;
+		this.length = length;
+	}
+
+	/**
+	 * Maps the file read-only.
+	 * @param file			the file
+	 * @return				the mapping
+	 * @throws IOException	if the file cannot be mapped
+	 */
+	public static MappedFile open(File file) throws IOException {
+		return open(file, SEGMENT_BITS);
+	}
+
+	static MappedFile open(File file, int segmentBits) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long length = channel.size();
+			long segmentSize = 1L << segmentBits;
+			int count = (int)Math.max(1, (length + segmentSize - 1) >>> segmentBits);
+			MappedByteBuffer[] segments = new MappedByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				long start = (long)i << segmentBits;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(length - start, segmentSize + OVERLAP));
+			}
+			return new MappedFile(segments, segmentBits, length);
+		}
+	}
+
+	/**
+	 * Maps a file of under 2GB into a single buffer.
+	 * @param file			the file
+	 * @return				the read-only buffer
+	 * @throws IOException	if the file cannot be mapped
+	 * @throws IllegalArgumentException	if the file is 2GB or larger
+	 */
+	public static MappedByteBuffer map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("File [" + file + "] is too large for a single buffer, use "
+						+ MappedFile.class.getSimpleName() + " instead.");
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * @return	the length of the file in bytes
+	 */
+	public long length() {
+		return length;
+	}
+
+	public byte get(long pos) {
+		return segment(pos).get(offset(pos));
+	}
+
+	public short getShort(long pos) {
+		return segment(pos).getShort(offset(pos));
+	}
+
+	public int getInt(long pos) {
+		return segment(pos).getInt(offset(pos));
+	}
+
+	public long getLong(long pos) {
+		return segment(pos).getLong(offset(pos));
+	}
+
+	/**
+	 * Copies bytes out of the file.
+	 * @param pos	the position of the first byte
+	 * @param dst	the destination array
+	 * @param off	the first index to copy to
+	 * @param len	the number of bytes to copy
+	 */
+	public void get(long pos, byte[] dst, int off, int len) {
+		if (pos < 0 || pos + len > length) {
+			throw new IndexOutOfBoundsException("[" + pos + ", " + (pos + len) + ") of [" + length + "]");
+		}
+		while (len > 0) {
+			ByteBuffer segment = segment(pos).duplicate();
+			int start = offset(pos);
+			int n = (int)Math.min(len, (1L << segmentBits) - start);
+			segment.position(start);
+			segment.get(dst, off, n);
+			pos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Returns a read-only view of a range of the file. The view shares the
+	 * mapping unless the range straddles a segment boundary, in which case
+	 * it is copied onto the heap.
+	 * @param pos	the position of the first byte
+	 * @param len	the length of the range
+	 * @return		the range, positioned at zero
+	 */
+	public ByteBuffer slice(long pos, int len) {
+		ByteBuffer segment = segment(pos);
+		int start = offset(pos);
+		if (start + len <= segment.limit()) {
+			ByteBuffer view = segment.asReadOnlyBuffer();
+			view.position(start);
+			view.limit(start + len);
+			return view.slice();
+		}
+		byte[] copy = new byte[len];
+		get(pos, copy, 0, len);
+		return ByteBuffer.wrap(copy).asReadOnlyBuffer();
+	}
+
+	private MappedByteBuffer segment(long pos) {
+		return segments[(int)(pos >>> segmentBits)];
+	}
+
+	private int offset(long pos) {
+		return (int)(pos & segmentMask);
+	}
+}
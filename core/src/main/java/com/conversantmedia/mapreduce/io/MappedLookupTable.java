@@ -0,0 +1,249 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * An immutable, hashed key/value table read through a memory mapping, so a
+ * large dimension table costs no heap and no load time in the task beyond the
+ * pages actually touched.
+ * <p>
+ * The driver fills a {@link Builder} and distributes it with
+ * <code>@Distribute</code>; the builder is compiled to a table file when the
+ * job is submitted and shipped on the distributed cache. A task field of type
+ * {@link MappedLookupTable} annotated with <code>@Resource</code> is injected
+ * with a reader over the mapped file. For example:
+ * <pre>
+ * // Driver
+ * &#64;Distribute
+ * private MappedLookupTable.Builder campaigns = new MappedLookupTable.Builder();
+ *
+ * // Mapper
+ * &#64;Resource
+ * private MappedLookupTable campaigns;
+ * </pre>
+ * <p>
+ * The file is an open addressing hash table of entry offsets followed by the
+ * entries, each a key length, value length, key and value. Lookups return
+ * read-only views of the mapped value without copying it, except where a value
+ * straddles one of the {@link MappedFile} segment boundaries.
+ */
+public final class MappedLookupTable {
+
+	private static final int MAGIC = 0x4d4c5431; // "MLT1"
+
+	private static final int HEADER_LENGTH = 12;
+
+	private final MappedFile file;
+
+	private final int size;
+
+	private final int mask;
+
+	private MappedLookupTable(MappedFile file) throws IOException {
+		this.file = file;
+		if (file.length() < HEADER_LENGTH || file.getInt(0) != MAGIC) {
+			throw new IOException("Not a lookup table file.");
+		}
+		this.size = file.getInt(4);
+		this.mask = file.getInt(8) - 1;
+	}
+
+	/**
+	 * Maps a table file written by {@link Builder#write(File)}.
+	 * @param file			the table file
+	 * @return				the table
+	 * @throws IOException	if the file cannot be mapped or isn't a table
+	 */
+	public static MappedLookupTable open(File file) throws IOException {
+		return new MappedLookupTable(MappedFile.open(file));
+	}
+
+	/**
+	 * @return	the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(byte[] key) {
+		return find(key) != 0;
+	}
+
+	/**
+	 * Looks up the value for a key without copying it.
+	 * @param key	the key
+	 * @return		a read-only view of the value, or <code>null</code> if absent
+	 */
+	public ByteBuffer get(byte[] key) {
+		long entry = find(key);
+		if (entry == 0) {
+			return null;
+		}
+		return file.slice(entry + 8 + key.length, file.getInt(entry + 4));
+	}
+
+	/**
+	 * Looks up the value for a key, copying it onto the heap.
+	 * @param key	the key
+	 * @return		the value, or <code>null</code> if absent
+	 */
+	public byte[] getBytes(byte[] key) {
+		long entry = find(key);
+		if (entry == 0) {
+			return null;
+		}
+		byte[] value = new byte[file.getInt(entry + 4)];
+		file.get(entry + 8 + key.length, value, 0, value.length);
+		return value;
+	}
+
+	/**
+	 * Looks up a value by its UTF-8 encoded key and decodes it.
+	 * @param key	the key
+	 * @return		the value, or <code>null</code> if absent
+	 */
+	public String get(String key) {
+		byte[] value = getBytes(key.getBytes(StandardCharsets.UTF_8));
+		return value == null? null : new String(value, StandardCharsets.UTF_8);
+	}
+
+	// Returns the offset of the key's entry, or 0 if it isn't in the table
+	private long find(byte[] key) {
+		int slot = hash(key) & mask;
+		long entry;
+		while ((entry = file.getLong(HEADER_LENGTH + 8L * slot)) != 0) {
+			if (keyEquals(entry, key)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+
+	private boolean keyEquals(long entry, byte[] key) {
+		if (file.getInt(entry) != key.length) {
+			return false;
+		}
+		long pos = entry + 8;
+		for (int i = 0; i < key.length; i++) {
+			if (file.get(pos + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// FNV-1a, finished with the murmur3 mix so the low bits are usable as a slot
+	private static int hash(byte[] key) {
+		int h = 0x811c9dc5;
+		for (byte b : key) {
+			h = (h ^ b) * 0x01000193;
+		}
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Collects the entries for a table on the driver and compiles them into
+	 * a table file. Later puts of the same key replace earlier ones.
+	 */
+	public static final class Builder {
+
+		private final Map<ByteBuffer, byte[]> entries = new HashMap<>();
+
+		public Builder put(byte[] key, byte[] value) {
+			entries.put(ByteBuffer.wrap(key.clone()), value.clone());
+			return this;
+		}
+
+		public Builder put(String key, String value) {
+			entries.put(ByteBuffer.wrap(key.getBytes(StandardCharsets.UTF_8)),
+					value.getBytes(StandardCharsets.UTF_8));
+			return this;
+		}
+
+		public Builder putAll(Map<String, String> map) {
+			for (Entry<String, String> e : map.entrySet()) {
+				put(e.getKey(), e.getValue());
+			}
+			return this;
+		}
+
+		public int size() {
+			return entries.size();
+		}
+
+		/**
+		 * Writes the table file.
+		 * @param file			the destination
+		 * @throws IOException	if the file cannot be written
+		 */
+		public void write(File file) throws IOException {
+			// Keep the table at most half full for short probe sequences
+			int slotCount = Integer.highestOneBit(Math.max(1, entries.size()) * 2 - 1) << 1;
+			int mask = slotCount - 1;
+			long[] slots = new long[slotCount];
+			long offset = HEADER_LENGTH + 8L * slotCount;
+			for (Entry<ByteBuffer, byte[]> e : entries.entrySet()) {
+				byte[] key = e.getKey().array();
+				int slot = hash(key) & mask;
+				while (slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = offset;
+				offset += 8 + key.length + e.getValue().length;
+			}
+
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(entries.size());
+				out.writeInt(slotCount);
+				for (long slot : slots) {
+					out.writeLong(slot);
+				}
+				for (Entry<ByteBuffer, byte[]> e : entries.entrySet()) {
+					byte[] key = e.getKey().array();
+					out.writeInt(key.length);
+					out.writeInt(e.getValue().length);
+					out.write(key);
+					out.write(e.getValue());
+				}
+			}
+		}
+	}
+}
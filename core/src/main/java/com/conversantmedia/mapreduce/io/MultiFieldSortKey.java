@@ -0,0 +1,346 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+import com.conversantmedia.mapreduce.io.CompositeSortKeySerialization.Layout;
+import com.conversantmedia.mapreduce.io.MultiFieldSortKeySerialization.KeyCodec;
+
+/**
+ * A composite key of N typed fields. The leading fields, up to the configured
+ * group field count, are used for partitioning and grouping while all fields
+ * participate in the sort, each in its configured {@link Order}.
+ * 
+ * Configure jobs with
+ * {@link MultiFieldSortKeySerialization#configureMapOutputKey(org.apache.hadoop.mapreduce.Job, int, SortField...)}.
+ */
+@SuppressWarnings("rawtypes")
+public class MultiFieldSortKey implements WritableComparable<MultiFieldSortKey> {
+
+	/**
+	 * The sort order of a single field.
+	 */
+	public static enum Order {
+		ASCENDING,
+		DESCENDING
+	}
+
+	/**
+	 * Declares the type and sort order of one field in the key.
+	 */
+	public static final class SortField {
+
+		private final Class<? extends WritableComparable> type;
+		private final Order order;
+
+		public SortField(Class<? extends WritableComparable> type) {
+			this(type, Order.ASCENDING);
+		}
+
+		public SortField(Class<? extends WritableComparable> type, Order order) {
+			this.type = type;
+			this.order = order;
+		}
+
+		public Class<? extends WritableComparable> getType() {
+			return type;
+		}
+
+		public Order getOrder() {
+			return order;
+		}
+	}
+
+	private WritableComparable[] fields;
+
+	public MultiFieldSortKey() {}
+
+	public MultiFieldSortKey(WritableComparable... fields) {
+		this.fields = fields;
+	}
+
+	public WritableComparable[] getFields() {
+		return fields;
+	}
+
+	public void setFields(WritableComparable... fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * @param index	the field's position in the key
+	 * @return		the field
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends WritableComparable> T get(int index) {
+		return (T)fields[index];
+	}
+
+	public void set(int index, WritableComparable field) {
+		this.fields[index] = field;
+	}
+
+	/**
+	 * @return	the number of fields in this key
+	 */
+	public int size() {
+		return fields == null? 0 : fields.length;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		for (WritableComparable field : fields) {
+			field.write(out);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		for (WritableComparable field : fields) {
+			field.readFields(in);
+		}
+	}
+
+	/**
+	 * Natural (ascending) order of each field in turn. Configured
+	 * field orders are applied by the {@link SortComparator}.
+	 *
+	 * @param that the other key
+	 * @return negative integer, zero, or a positive integer as per contract
+	 */
+	@Override
+	public int compareTo(MultiFieldSortKey that) {
+		return compareFields(this, that, size(), null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compareFields(MultiFieldSortKey k1, MultiFieldSortKey k2,
+			int fieldCount, boolean[] descending) {
+		for (int i = 0; i < fieldCount; i++) {
+			int compare = k1.fields[i].compareTo(k2.fields[i]);
+			if (compare != 0) {
+				return descending != null && descending[i]? -compare : compare;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(fields);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		return Arrays.equals(fields, ((MultiFieldSortKey)obj).fields);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getName() + Arrays.toString(fields);
+	}
+
+	/**
+	 * Sorts on all fields, each in its configured order.
+	 */
+	public static final class SortComparator extends MultiFieldSortKeyComparator {
+
+		@Override
+		protected int fieldCount() {
+			return codec().fieldCount();
+		}
+	}
+
+	/**
+	 * Groups on the leading group fields.
+	 */
+	public static final class GroupingComparator extends MultiFieldSortKeyComparator {
+
+		@Override
+		protected int fieldCount() {
+			return codec().groupFieldCount();
+		}
+	}
+
+	/**
+	 * Partitions on the murmur hash of the serialized group fields.
+	 *
+	 * @param <T> Value type
+	 */
+	public static final class KeyPartitioner<T> extends Partitioner<MultiFieldSortKey, T>
+		implements Configurable {
+
+		private Configuration conf;
+		private int groupFieldCount;
+
+		private final DataOutputBuffer buffer = new DataOutputBuffer();
+
+		@Override
+		public int getPartition(MultiFieldSortKey key, T value, int numPartitions) {
+			int hash = 1;
+			for (int i = 0; i < groupFieldCount; i++) {
+				hash = 31 * hash + RawWritableUtil.murmurHash(key.fields[i], buffer);
+			}
+			return (hash & Integer.MAX_VALUE) % numPartitions;
+		}
+
+		@Override
+		public void setConf(Configuration conf) {
+			this.conf = conf;
+			this.groupFieldCount = MultiFieldSortKeySerialization.getGroupFieldCount(conf);
+		}
+
+		@Override
+		public Configuration getConf() {
+			return conf;
+		}
+	}
+
+	/**
+	 * Compares the leading {@link #fieldCount()} fields of two keys. Serialized
+	 * keys are compared without deserializing when the {@link Layout#NORMALIZED}
+	 * layout is used, or when every compared field has a registered raw comparator
+	 * and a known serialized length.
+	 */
+	public abstract static class MultiFieldSortKeyComparator extends Configured
+		implements RawComparator<MultiFieldSortKey> {
+
+		private KeyCodec codec;
+
+		private MultiFieldSortKey key1;
+		private MultiFieldSortKey key2;
+		private final DataInputBuffer buffer = new DataInputBuffer();
+
+		// Per field raw comparators, only resolved for the standard layout
+		private RawComparator[] comparators;
+		private boolean rawComparable;
+
+		@Override
+		public void setConf(Configuration conf) {
+			super.setConf(conf);
+			if (conf == null) {
+				return;
+			}
+			this.codec = KeyCodec.forConf(conf);
+			this.key1 = codec.newKey(conf);
+			this.key2 = codec.newKey(conf);
+
+			if (codec.isNormalized()) {
+				this.rawComparable = true;
+				return;
+			}
+			int count = fieldCount();
+			this.comparators = new RawComparator[count];
+			this.rawComparable = true;
+			for (int i = 0; i < count; i++) {
+				comparators[i] = RawWritableUtil.rawComparatorFor(codec.fieldClass(i));
+				// The last field of the key runs to the end of the buffer
+				boolean lengthKnown = i == codec.fieldCount() - 1 || codec.isLengthKnown(i);
+				rawComparable &= comparators[i] != null && lengthKnown;
+			}
+		}
+
+		protected KeyCodec codec() {
+			return codec;
+		}
+
+		/**
+		 * @return	the number of leading fields compared
+		 */
+		protected abstract int fieldCount();
+
+		@Override
+		public int compare(MultiFieldSortKey o1, MultiFieldSortKey o2) {
+			return compareFields(o1, o2, fieldCount(), codec.descending());
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				if (rawComparable) {
+					return codec.isNormalized()? compareNormalized(b1, s1, l1, b2, s2, l2)
+							: compareRaw(b1, s1, l1, b2, s2, l2);
+				}
+				buffer.reset(b1, s1, l1);
+				codec.read(key1, buffer);
+				buffer.reset(b2, s2, l2);
+				codec.read(key2, buffer);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return compare(key1, key2);
+		}
+
+		// Descending fields are written inverted so a byte comparison of the
+		// compared prefix gives the configured order.
+		private int compareNormalized(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
+				throws IOException {
+			if (fieldCount() < codec.fieldCount()) {
+				l1 = codec.fieldsLength(fieldCount(), b1, s1, l1);
+				l2 = codec.fieldsLength(fieldCount(), b2, s2, l2);
+			}
+			return WritableComparator.compareBytes(b1, s1, l1, b2, s2, l2);
+		}
+
+		private int compareRaw(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
+				throws IOException {
+			int end1 = s1 + l1;
+			int end2 = s2 + l2;
+			boolean[] descending = codec.descending();
+			for (int i = 0; i < comparators.length; i++) {
+				int fl1 = codec.fieldLength(i, b1, s1, end1);
+				int fl2 = codec.fieldLength(i, b2, s2, end2);
+				@SuppressWarnings("unchecked")
+				int compare = comparators[i].compare(b1, s1, fl1, b2, s2, fl2);
+				if (compare != 0) {
+					return descending[i]? -compare : compare;
+				}
+				s1 += fl1;
+				s2 += fl2;
+			}
+			return 0;
+		}
+	}
+}
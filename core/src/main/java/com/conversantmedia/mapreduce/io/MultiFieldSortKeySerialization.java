@@ -0,0 +1,443 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.serializer.Deserializer;
+import org.apache.hadoop.io.serializer.Serialization;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.conversantmedia.mapreduce.io.CompositeSortKeySerialization.Layout;
+import com.conversantmedia.mapreduce.io.MultiFieldSortKey.Order;
+import com.conversantmedia.mapreduce.io.MultiFieldSortKey.SortField;
+
+/**
+ * Encapsulates the serialization functionality for a job
+ * using the {@link MultiFieldSortKey} key.
+ */
+public class MultiFieldSortKeySerialization extends Configured implements Serialization<MultiFieldSortKey> {
+
+	public static final String CONF_KEY_FIELD_CLASSES = "com.conversantmedia.mapreduce.io.multifieldkey.classes";
+	public static final String CONF_KEY_FIELD_ORDERS = "com.conversantmedia.mapreduce.io.multifieldkey.orders";
+	public static final String CONF_KEY_GROUP_FIELDS = "com.conversantmedia.mapreduce.io.multifieldkey.groupfields";
+	public static final String CONF_KEY_LAYOUT = "com.conversantmedia.mapreduce.io.multifieldkey.layout";
+
+	private Serializer<MultiFieldSortKey> serializer;
+	private Deserializer<MultiFieldSortKey> deserializer;
+
+	public MultiFieldSortKeySerialization() {}
+
+	public MultiFieldSortKeySerialization(Configuration conf) {
+		super(conf);
+	}
+
+	@Override
+	public boolean accept(Class<?> c) {
+		return MultiFieldSortKey.class.isAssignableFrom(c);
+	}
+
+	@Override
+	public Deserializer<MultiFieldSortKey> getDeserializer(Class<MultiFieldSortKey> c) {
+		if (deserializer == null) {
+			deserializer = new MultiFieldSortKeyDeserializer(getConf());
+		}
+		return deserializer;
+	}
+
+	@Override
+	public Serializer<MultiFieldSortKey> getSerializer(Class<MultiFieldSortKey> c) {
+		if (serializer == null) {
+			serializer = new MultiFieldSortKeySerializer(getConf());
+		}
+		return serializer;
+	}
+
+	/**
+	 * Convenience method to configure the job for using the multi-field key. Uses the
+	 * {@link Layout#NORMALIZED} layout if every field type supports it, otherwise the
+	 * {@link Layout#STANDARD} layout.
+	 * @param job				the job using this serializer
+	 * @param groupFieldCount	the number of leading fields used for partitioning and grouping
+	 * @param fields			the key fields, in sort precedence
+	 */
+	public static void configureMapOutputKey(Job job, int groupFieldCount, SortField... fields) {
+		configureSortFields(job, fields);
+		setGroupFieldCount(job.getConfiguration(), groupFieldCount);
+
+		job.setPartitionerClass(MultiFieldSortKey.KeyPartitioner.class);
+		job.setGroupingComparatorClass(MultiFieldSortKey.GroupingComparator.class);
+	}
+
+	/**
+	 * Configures the key fields, sort comparator and serialization for the multi-field
+	 * key. The partitioner and grouping comparator are only set if the job doesn't
+	 * already have them configured. The group field count defaults to one unless set
+	 * with {@link #setGroupFieldCount(Configuration, int)}.
+	 * @param job		the job using this serializer
+	 * @param fields	the key fields, in sort precedence
+	 */
+	public static void configureSortFields(Job job, SortField... fields) {
+		if (fields.length == 0) {
+			throw new IllegalArgumentException("At least one sort field is required");
+		}
+		Configuration conf = job.getConfiguration();
+
+		String[] classes = new String[fields.length];
+		String[] orders = new String[fields.length];
+		boolean normalized = true;
+		for (int i = 0; i < fields.length; i++) {
+			classes[i] = fields[i].getType().getName();
+			orders[i] = fields[i].getOrder().name();
+			normalized &= NormalizedKeyFormat.isSupported(fields[i].getType());
+		}
+		conf.setStrings(CONF_KEY_FIELD_CLASSES, classes);
+		conf.setStrings(CONF_KEY_FIELD_ORDERS, orders);
+		conf.setEnum(CONF_KEY_LAYOUT, normalized? Layout.NORMALIZED : Layout.STANDARD);
+
+		// Set the key as our map output key
+		job.setMapOutputKeyClass(MultiFieldSortKey.class);
+
+		job.setSortComparatorClass(MultiFieldSortKey.SortComparator.class);
+		if (conf.get(MRJobConfig.PARTITIONER_CLASS_ATTR) == null) {
+			job.setPartitionerClass(MultiFieldSortKey.KeyPartitioner.class);
+		}
+		if (conf.get(MRJobConfig.GROUP_COMPARATOR_CLASS) == null) {
+			job.setGroupingComparatorClass(MultiFieldSortKey.GroupingComparator.class);
+		}
+
+		// Now setup the serialization by registering with the framework.
+		Collection<String> serializations = new ArrayList<>();
+		serializations.add(MultiFieldSortKeySerialization.class.getName());
+		for (String serialization : conf.getStringCollection("io.serializations")) {
+			if (!serializations.contains(serialization)) {
+				serializations.add(serialization);
+			}
+		}
+		conf.setStrings("io.serializations", serializations.toArray(new String[serializations.size()]));
+	}
+
+	/**
+	 * @param conf				the job configuration
+	 * @param groupFieldCount	the number of leading fields used for partitioning and grouping
+	 */
+	public static void setGroupFieldCount(Configuration conf, int groupFieldCount) {
+		if (groupFieldCount < 1) {
+			throw new IllegalArgumentException("Group field count must be positive: " + groupFieldCount);
+		}
+		conf.setInt(CONF_KEY_GROUP_FIELDS, groupFieldCount);
+	}
+
+	/**
+	 * @param conf	the job configuration
+	 * @return		the number of leading fields used for partitioning and grouping, one if not set
+	 */
+	public static int getGroupFieldCount(Configuration conf) {
+		return conf.getInt(CONF_KEY_GROUP_FIELDS, 1);
+	}
+
+	/**
+	 * Handles serialization of the multi-field keys.
+	 */
+	public static final class MultiFieldSortKeySerializer implements Serializer<MultiFieldSortKey> {
+
+		private DataOutputStream out;
+
+		private final KeyCodec codec;
+
+		public MultiFieldSortKeySerializer(Configuration conf) {
+			this.codec = KeyCodec.forConf(conf);
+		}
+
+		@Override
+		public void serialize(MultiFieldSortKey key) throws IOException {
+			codec.write(key, this.out);
+		}
+
+		@Override
+		public void open(OutputStream out) throws IOException {
+			this.out = new DataOutputStream(out);
+		}
+
+		@Override
+		public void close() throws IOException {
+			IOUtils.closeStream(this.out);
+		}
+	}
+
+	/**
+	 * Handles deserialization of the multi-field keys. A key passed in for reuse
+	 * is filled in place, along with its field instances.
+	 */
+	public static final class MultiFieldSortKeyDeserializer implements Deserializer<MultiFieldSortKey> {
+
+		private DataInputStream in;
+
+		private final Configuration conf;
+		private final KeyCodec codec;
+
+		public MultiFieldSortKeyDeserializer(Configuration conf) {
+			this.conf = conf;
+			this.codec = KeyCodec.forConf(conf);
+		}
+
+		@Override
+		public MultiFieldSortKey deserialize(MultiFieldSortKey reuse) throws IOException {
+			if (reuse == null || reuse.size() != codec.fieldCount()) {
+				reuse = codec.newKey(conf);
+			}
+			else {
+				codec.fillFields(reuse, conf);
+			}
+			codec.read(reuse, this.in);
+			return reuse;
+		}
+
+		@Override
+		public void open(InputStream in) throws IOException {
+			// Keep buffers as-is so the normalized formats may read their backing array
+			this.in = in instanceof DataInputBuffer? (DataInputBuffer)in : new DataInputStream(in);
+		}
+
+		@Override
+		public void close() throws IOException {
+			IOUtils.closeStream(this.in);
+		}
+	}
+
+	/**
+	 * Reads and writes the fields of a key in the configured layout, and locates
+	 * the fields within serialized keys. Not thread safe.
+	 * 
+	 * In the {@link Layout#NORMALIZED} layout each field is written in its
+	 * {@link NormalizedKeyFormat}, with every byte inverted for descending fields.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	static final class KeyCodec {
+
+		private final Class<? extends WritableComparable>[] classes;
+		private final boolean[] descending;
+		private final int groupFieldCount;
+		private final boolean normalized;
+
+		private final NormalizedKeyFormat[] formats;
+		private final RawWritableUtil.SerializedLength[] lengths;
+
+		// Holds descending fields while they are inverted
+		private final DataOutputBuffer scratch = new DataOutputBuffer();
+
+		// Inverting view of the last stream read from
+		private DataInputStream source;
+		private DataInputStream inverted;
+
+		private KeyCodec(Class<? extends WritableComparable>[] classes, boolean[] descending,
+				int groupFieldCount, boolean normalized) {
+			this.classes = classes;
+			this.descending = descending;
+			this.groupFieldCount = Math.min(groupFieldCount, classes.length);
+			this.normalized = normalized;
+			this.formats = new NormalizedKeyFormat[classes.length];
+			this.lengths = new RawWritableUtil.SerializedLength[classes.length];
+			for (int i = 0; i < classes.length; i++) {
+				if (normalized) {
+					formats[i] = NormalizedKeyFormat.forClass(classes[i]);
+				}
+				else {
+					lengths[i] = RawWritableUtil.serializedLengthFor(classes[i]);
+				}
+			}
+		}
+
+		static KeyCodec forConf(Configuration conf) {
+			String[] names = conf.getStrings(CONF_KEY_FIELD_CLASSES);
+			if (names == null) {
+				throw new IllegalStateException("No fields configured for " + MultiFieldSortKey.class.getName());
+			}
+			String[] orders = conf.getStrings(CONF_KEY_FIELD_ORDERS, new String[0]);
+			Class<? extends WritableComparable>[] classes = new Class[names.length];
+			boolean[] descending = new boolean[names.length];
+			for (int i = 0; i < names.length; i++) {
+				try {
+					classes[i] = conf.getClassByName(names[i]).asSubclass(WritableComparable.class);
+				} catch (ClassNotFoundException e) {
+					throw new IllegalStateException("Unable to load key field class '" + names[i] + "'", e);
+				}
+				descending[i] = i < orders.length && Order.valueOf(orders[i]) == Order.DESCENDING;
+			}
+			Layout layout = conf.getEnum(CONF_KEY_LAYOUT, Layout.STANDARD);
+			return new KeyCodec(classes, descending, getGroupFieldCount(conf), layout == Layout.NORMALIZED);
+		}
+
+		int fieldCount() {
+			return classes.length;
+		}
+
+		int groupFieldCount() {
+			return groupFieldCount;
+		}
+
+		Class<? extends WritableComparable> fieldClass(int i) {
+			return classes[i];
+		}
+
+		boolean[] descending() {
+			return descending;
+		}
+
+		boolean isNormalized() {
+			return normalized;
+		}
+
+		boolean isLengthKnown(int i) {
+			return normalized || lengths[i] != null;
+		}
+
+		MultiFieldSortKey newKey(Configuration conf) {
+			WritableComparable[] fields = new WritableComparable[classes.length];
+			for (int i = 0; i < classes.length; i++) {
+				fields[i] = ReflectionUtils.newInstance(classes[i], conf);
+			}
+			return new MultiFieldSortKey(fields);
+		}
+
+		// Creates any fields missing from a reused key
+		void fillFields(MultiFieldSortKey key, Configuration conf) {
+			for (int i = 0; i < classes.length; i++) {
+				if (key.get(i) == null) {
+					key.set(i, ReflectionUtils.newInstance(classes[i], conf));
+				}
+			}
+		}
+
+		void write(MultiFieldSortKey key, DataOutputStream out) throws IOException {
+			if (key.size() != classes.length) {
+				throw new IOException("Expected " + classes.length + " key fields, found " + key.size());
+			}
+			if (!normalized) {
+				key.write(out);
+				return;
+			}
+			for (int i = 0; i < classes.length; i++) {
+				if (descending[i]) {
+					scratch.reset();
+					formats[i].write(key.get(i), scratch);
+					byte[] data = scratch.getData();
+					for (int j = 0; j < scratch.getLength(); j++) {
+						data[j] = (byte)~data[j];
+					}
+					out.write(data, 0, scratch.getLength());
+				}
+				else {
+					formats[i].write(key.get(i), out);
+				}
+			}
+		}
+
+		void read(MultiFieldSortKey key, DataInputStream in) throws IOException {
+			if (!normalized) {
+				key.readFields(in);
+				return;
+			}
+			for (int i = 0; i < classes.length; i++) {
+				formats[i].readFields(key.get(i), descending[i]? inverted(in) : in);
+			}
+		}
+
+		/**
+		 * @param i		the field index
+		 * @param b		the serialized key
+		 * @param s		offset of the field's first byte
+		 * @param end	offset just past the end of the key
+		 * @return		the number of bytes the field occupies
+		 */
+		int fieldLength(int i, byte[] b, int s, int end) throws IOException {
+			if (normalized) {
+				return descending[i]? formats[i].invertedLength(b, s) : formats[i].length(b, s);
+			}
+			return i == classes.length - 1? end - s : lengths[i].length(b, s);
+		}
+
+		/**
+		 * @param count	the number of leading fields
+		 * @param b		the serialized key
+		 * @param s		offset of the key's first byte
+		 * @param l		length of the key
+		 * @return		the number of bytes the leading fields occupy
+		 */
+		int fieldsLength(int count, byte[] b, int s, int l) throws IOException {
+			int offset = s;
+			for (int i = 0; i < count; i++) {
+				offset += fieldLength(i, b, offset, s + l);
+			}
+			return offset - s;
+		}
+
+		private DataInputStream inverted(DataInputStream in) {
+			if (in != source) {
+				source = in;
+				inverted = new DataInputStream(new InvertingInputStream(in));
+			}
+			return inverted;
+		}
+	}
+
+	/**
+	 * Inverts every byte read from the underlying stream.
+	 */
+	private static final class InvertingInputStream extends FilterInputStream {
+
+		InvertingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			return b < 0? b : ~b & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			for (int i = off; i < off + read; i++) {
+				b[i] = (byte)~b[i];
+			}
+			return read;
+		}
+	}
+}
@@ -0,0 +1,442 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.ByteWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.ShortWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.VIntWritable;
+import org.apache.hadoop.io.VLongWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Order-preserving ("normalized") binary encoding for common key types. Two
+ * keys encoded with the same format compare, as unsigned bytes, in the same
+ * order as their natural ordering:
+ * <ul>
+ * <li>integral types are written big-endian with the sign bit flipped
+ * <li><code>Text</code> and <code>BytesWritable</code> are written with each 0x00
+ * 		byte escaped as 0x00 0xFF and terminated by 0x00 0x00
+ * </ul>
+ * Every encoding is self-delimiting, so the length of an encoded key can be
+ * determined from its bytes.
+ * <p>
+ * Floating point types are deliberately not supported since their natural
+ * ordering treats -0.0 and 0.0 as equal.
+ *
+ * @param <W>	the key type
+ */
+public abstract class NormalizedKeyFormat<W extends Writable> {
+
+	private static final int ESCAPE = 0x00;
+	private static final int ESCAPED_ZERO = 0xFF;
+	private static final int TERMINATOR = 0x00;
+
+	/**
+	 * @param c		the key type
+	 * @return		<code>true</code> if there is a normalized format for this type
+	 */
+	public static boolean isSupported(Class<?> c) {
+		return c != null && forClass(c) != null;
+	}
+
+	/**
+	 * Creates a new format instance for the key type. Instances hold scratch
+	 * buffers and are not thread safe.
+	 * @param c		the key type
+	 * @return		the format, or <code>null</code> if this type is not supported
+	 */
+	@SuppressWarnings("unchecked")
+	public static <W extends Writable> NormalizedKeyFormat<W> forClass(Class<?> c) {
+		NormalizedKeyFormat<?> format = null;
+		if (c == NullWritable.class) {
+			format = new NullFormat();
+		}
+		else if (c == BooleanWritable.class) {
+			format = new BooleanFormat();
+		}
+		else if (c == ByteWritable.class) {
+			format = new ByteFormat();
+		}
+		else if (c == ShortWritable.class) {
+			format = new ShortFormat();
+		}
+		else if (c == IntWritable.class) {
+			format = new IntFormat();
+		}
+		else if (c == VIntWritable.class) {
+			format = new VIntFormat();
+		}
+		else if (c == LongWritable.class) {
+			format = new LongFormat();
+		}
+		else if (c == VLongWritable.class) {
+			format = new VLongFormat();
+		}
+		else if (c == Text.class) {
+			format = new TextFormat();
+		}
+		else if (c == BytesWritable.class) {
+			format = new BytesFormat();
+		}
+		return (NormalizedKeyFormat<W>) format;
+	}
+
+	/**
+	 * Writes the key in its normalized form.
+	 * @param key			the key
+	 * @param out			the destination
+	 * @throws IOException	if the write fails
+	 */
+	public abstract void write(W key, DataOutput out) throws IOException;
+
+	/**
+	 * Reads a key written by {@link #write}.
+	 * @param key			the instance to populate
+	 * @param in			the source
+	 * @throws IOException	if the read fails
+	 */
+	public abstract void readFields(W key, DataInput in) throws IOException;
+
+	/**
+	 * @param b		the buffer containing the normalized key
+	 * @param s		offset of the key's first byte
+	 * @return		the number of bytes the normalized key occupies
+	 */
+	public abstract int length(byte[] b, int s);
+
+	/**
+	 * @param b		the buffer containing the normalized key with every byte inverted
+	 * 				(as written for descending order)
+	 * @param s		offset of the key's first byte
+	 * @return		the number of bytes the inverted key occupies
+	 */
+	public int invertedLength(byte[] b, int s) {
+		return length(b, s);
+	}
+
+	/**
+	 * Compares two normalized keys as unsigned bytes.
+	 * @param b1	the first buffer
+	 * @param s1	offset of the first key
+	 * @param b2	the second buffer
+	 * @param s2	offset of the second key
+	 * @return		negative integer, zero, or a positive integer as per contract
+	 */
+	public int compare(byte[] b1, int s1, byte[] b2, int s2) {
+		return WritableComparator.compareBytes(b1, s1, length(b1, s1), b2, s2, length(b2, s2));
+	}
+
+	private static final class NullFormat extends NormalizedKeyFormat<NullWritable> {
+		@Override
+		public void write(NullWritable key, DataOutput out) {}
+
+		@Override
+		public void readFields(NullWritable key, DataInput in) {}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return 0;
+		}
+	}
+
+	private static final class BooleanFormat extends NormalizedKeyFormat<BooleanWritable> {
+		@Override
+		public void write(BooleanWritable key, DataOutput out) throws IOException {
+			out.writeBoolean(key.get());
+		}
+
+		@Override
+		public void readFields(BooleanWritable key, DataInput in) throws IOException {
+			key.set(in.readBoolean());
+		}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return 1;
+		}
+	}
+
+	private static final class ByteFormat extends NormalizedKeyFormat<ByteWritable> {
+		@Override
+		public void write(ByteWritable key, DataOutput out) throws IOException {
+			out.writeByte(key.get() ^ Byte.MIN_VALUE);
+		}
+
+		@Override
+		public void readFields(ByteWritable key, DataInput in) throws IOException {
+			key.set((byte)(in.readByte() ^ Byte.MIN_VALUE));
+		}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return 1;
+		}
+	}
+
+	private static final class ShortFormat extends NormalizedKeyFormat<ShortWritable> {
+		@Override
+		public void write(ShortWritable key, DataOutput out) throws IOException {
+			out.writeShort(key.get() ^ Short.MIN_VALUE);
+		}
+
+		@Override
+		public void readFields(ShortWritable key, DataInput in) throws IOException {
+			key.set((short)(in.readShort() ^ Short.MIN_VALUE));
+		}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return 2;
+		}
+	}
+
+	private static final class IntFormat extends NormalizedKeyFormat<IntWritable> {
+		@Override
+		public void write(IntWritable key, DataOutput out) throws IOException {
+			out.writeInt(key.get() ^ Integer.MIN_VALUE);
+		}
+
+		@Override
+		public void readFields(IntWritable key, DataInput in) throws IOException {
+			key.set(in.readInt() ^ Integer.MIN_VALUE);
+		}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return 4;
+		}
+	}
+
+	private static final class VIntFormat extends NormalizedKeyFormat<VIntWritable> {
+		@Override
+		public void write(VIntWritable key, DataOutput out) throws IOException {
+			out.writeInt(key.get() ^ Integer.MIN_VALUE);
+		}
+
+		@Override
+		public void readFields(VIntWritable key, DataInput in) throws IOException {
+			key.set(in.readInt() ^ Integer.MIN_VALUE);
+		}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return 4;
+		}
+	}
+
+	private static final class LongFormat extends NormalizedKeyFormat<LongWritable> {
+		@Override
+		public void write(LongWritable key, DataOutput out) throws IOException {
+			out.writeLong(key.get() ^ Long.MIN_VALUE);
+		}
+
+		@Override
+		public void readFields(LongWritable key, DataInput in) throws IOException {
+			key.set(in.readLong() ^ Long.MIN_VALUE);
+		}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return 8;
+		}
+	}
+
+	private static final class VLongFormat extends NormalizedKeyFormat<VLongWritable> {
+		@Override
+		public void write(VLongWritable key, DataOutput out) throws IOException {
+			out.writeLong(key.get() ^ Long.MIN_VALUE);
+		}
+
+		@Override
+		public void readFields(VLongWritable key, DataInput in) throws IOException {
+			key.set(in.readLong() ^ Long.MIN_VALUE);
+		}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return 8;
+		}
+	}
+
+	private static final class TextFormat extends NormalizedKeyFormat<Text> {
+		private final DataOutputBuffer buffer = new DataOutputBuffer();
+
+		@Override
+		public void write(Text key, DataOutput out) throws IOException {
+			writeEscaped(key.getBytes(), key.getLength(), out);
+		}
+
+		@Override
+		public void readFields(Text key, DataInput in) throws IOException {
+			readEscaped(in, buffer);
+			key.set(buffer.getData(), 0, buffer.getLength());
+		}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return escapedLength(b, s, 0);
+		}
+
+		@Override
+		public int invertedLength(byte[] b, int s) {
+			return escapedLength(b, s, 0xFF);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, byte[] b2, int s2) {
+			return compareEscaped(b1, s1, b2, s2);
+		}
+	}
+
+	private static final class BytesFormat extends NormalizedKeyFormat<BytesWritable> {
+		private final DataOutputBuffer buffer = new DataOutputBuffer();
+
+		@Override
+		public void write(BytesWritable key, DataOutput out) throws IOException {
+			writeEscaped(key.getBytes(), key.getLength(), out);
+		}
+
+		@Override
+		public void readFields(BytesWritable key, DataInput in) throws IOException {
+			readEscaped(in, buffer);
+			key.set(buffer.getData(), 0, buffer.getLength());
+		}
+
+		@Override
+		public int length(byte[] b, int s) {
+			return escapedLength(b, s, 0);
+		}
+
+		@Override
+		public int invertedLength(byte[] b, int s) {
+			return escapedLength(b, s, 0xFF);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, byte[] b2, int s2) {
+			return compareEscaped(b1, s1, b2, s2);
+		}
+	}
+
+	private static void writeEscaped(byte[] bytes, int length, DataOutput out) throws IOException {
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			if (bytes[i] == ESCAPE) {
+				out.write(bytes, start, i - start + 1);
+				out.writeByte(ESCAPED_ZERO);
+				start = i + 1;
+			}
+		}
+		out.write(bytes, start, length - start);
+		out.writeByte(ESCAPE);
+		out.writeByte(TERMINATOR);
+	}
+
+	private static void readEscaped(DataInput in, DataOutputBuffer buffer) throws IOException {
+		buffer.reset();
+		if (in instanceof DataInputBuffer) {
+			// Unescape directly from the backing array
+			DataInputBuffer inBuffer = (DataInputBuffer)in;
+			byte[] data = inBuffer.getData();
+			int start = inBuffer.getPosition();
+			int length = escapedLength(data, start, 0);
+			int from = start;
+			for (int i = start; i < start + length - 2; i++) {
+				if (data[i] == ESCAPE) {
+					buffer.write(data, from, i - from + 1);
+					from = i + 2;
+					i++;
+				}
+			}
+			buffer.write(data, from, start + length - 2 - from);
+			inBuffer.skipBytes(length);
+			return;
+		}
+		byte b;
+		while (true) {
+			b = in.readByte();
+			if (b == ESCAPE) {
+				if (in.readByte() == TERMINATOR) {
+					return;
+				}
+			}
+			buffer.write(b);
+		}
+	}
+
+	// Single pass comparison, stopping at the first difference or the shared terminator
+	private static int compareEscaped(byte[] b1, int s1, byte[] b2, int s2) {
+		int i = s1;
+		int j = s2;
+		while (true) {
+			int a = b1[i] & 0xff;
+			int b = b2[j] & 0xff;
+			if (a != b) {
+				return a - b;
+			}
+			if (a == ESCAPE) {
+				a = b1[i + 1] & 0xff;
+				b = b2[j + 1] & 0xff;
+				if (a != b) {
+					return a - b;
+				}
+				if (a == TERMINATOR) {
+					return 0;
+				}
+				i++;
+				j++;
+			}
+			i++;
+			j++;
+		}
+	}
+
+	// The mask is applied to each byte to read inverted keys
+	private static int escapedLength(byte[] b, int s, int mask) {
+		int i = s;
+		while (true) {
+			if (((b[i] ^ mask) & 0xff) == ESCAPE) {
+				if (((b[i + 1] ^ mask) & 0xff) == TERMINATOR) {
+					return i + 2 - s;
+				}
+				i += 2;
+			}
+			else {
+				i++;
+			}
+		}
+	}
+}
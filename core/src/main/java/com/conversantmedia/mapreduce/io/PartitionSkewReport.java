@@ -0,0 +1,172 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.TaskReport;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports the number of records received by each reduce partition as job
+ * counters so that skewed partitions (hot reducers) can be spotted. Each reduce
+ * task adds its input record count to a counter named for its partition.
+ * Since Hadoop limits the number of counters per job, only partitions below
+ * {@link #CONF_KEY_MAX_PARTITIONS} are reported as counters; every partition
+ * logs its count and adds to the {@link #COUNTER_PARTITIONS} and
+ * {@link #COUNTER_RECORDS} totals.
+ * <p>
+ * Job counters are sums of task counters, so the largest and smallest partitions
+ * are found once the job completes, by {@link #summarize(Job)}, from the counters
+ * of every reduce task. Annotated tools log the summary.
+ * <p>
+ * Annotated reducers report automatically once enabled, i.e. with
+ * <code>@Partitioner(skewReport=true)</code>.
+ */
+public final class PartitionSkewReport {
+
+	public static final String CONF_KEY_ENABLED = "com.conversantmedia.mapreduce.io.skewreport.enabled";
+	public static final String CONF_KEY_MAX_PARTITIONS = "com.conversantmedia.mapreduce.io.skewreport.maxpartitions";
+
+	public static final String COUNTER_GROUP = "Partition Records";
+
+	public static final String COUNTER_PARTITIONS = "partitions";
+	public static final String COUNTER_RECORDS = "records";
+	public static final String COUNTER_MAX = "max-records";
+	public static final String COUNTER_MIN = "min-records";
+	public static final String COUNTER_MEAN = "mean-records";
+	public static final String COUNTER_LARGEST = "largest-partition";
+
+	private static final int DEFAULT_MAX_PARTITIONS = 64;
+
+	private PartitionSkewReport() {}
+
+	/**
+	 * Enable partition skew reporting for this job.
+	 * @param job	the job to configure
+	 */
+	public static void enable(Job job) {
+		enable(job.getConfiguration());
+	}
+
+	/**
+	 * Enable partition skew reporting.
+	 * @param conf	the job configuration
+	 */
+	public static void enable(Configuration conf) {
+		conf.setBoolean(CONF_KEY_ENABLED, true);
+	}
+
+	/**
+	 * @param conf	the job configuration
+	 * @return		<code>true</code> if skew reporting is enabled
+	 */
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(CONF_KEY_ENABLED, false);
+	}
+
+	/**
+	 * Records this reduce task's input record count against its partition.
+	 * Should be called once the reducer has consumed its input. Does nothing
+	 * if reporting isn't enabled.
+	 * @param context	the reduce task context
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void report(TaskInputOutputContext context) {
+		if (!isEnabled(context.getConfiguration())) {
+			return;
+		}
+		int partition = context.getTaskAttemptID().getTaskID().getId();
+		long records = context.getCounter(TaskCounter.REDUCE_INPUT_RECORDS).getValue();
+		logger().info("Partition [" + partition + "] received [" + records + "] records.");
+
+		context.getCounter(COUNTER_GROUP, COUNTER_PARTITIONS).increment(1);
+		context.getCounter(COUNTER_GROUP, COUNTER_RECORDS).increment(records);
+		if (partition < context.getConfiguration().getInt(CONF_KEY_MAX_PARTITIONS, DEFAULT_MAX_PARTITIONS)) {
+			context.getCounter(COUNTER_GROUP, counterName(partition)).increment(records);
+		}
+	}
+
+	/**
+	 * Summarizes the partition sizes of a completed job from the input record
+	 * counts of all its reduce tasks, whether or not they have a partition counter.
+	 * @param job	the completed job
+	 * @return		the {@link #COUNTER_MAX}, {@link #COUNTER_MIN}, {@link #COUNTER_MEAN} and
+	 * 				{@link #COUNTER_LARGEST} counters, in the {@link #COUNTER_GROUP} group
+	 * @throws IOException			if the task reports can't be retrieved
+	 * @throws InterruptedException	if interrupted while retrieving them
+	 */
+	public static Counters summarize(Job job) throws IOException, InterruptedException {
+		TaskReport[] reports = job.getTaskReports(TaskType.REDUCE);
+		long[] records = new long[reports.length];
+		for (TaskReport report : reports) {
+			int partition = report.getTaskID().getId();
+			if (partition < records.length) {
+				records[partition] = report.getTaskCounters()
+						.findCounter(TaskCounter.REDUCE_INPUT_RECORDS).getValue();
+			}
+		}
+		return summarize(records);
+	}
+
+	static Counters summarize(long[] records) {
+		Counters counters = new Counters();
+		if (records.length == 0) {
+			return counters;
+		}
+		int largest = 0;
+		long min = records[0];
+		long total = 0;
+		for (int partition = 0; partition < records.length; partition++) {
+			if (records[partition] > records[largest]) {
+				largest = partition;
+			}
+			min = Math.min(min, records[partition]);
+			total += records[partition];
+		}
+		counters.findCounter(COUNTER_GROUP, COUNTER_MAX).setValue(records[largest]);
+		counters.findCounter(COUNTER_GROUP, COUNTER_MIN).setValue(min);
+		counters.findCounter(COUNTER_GROUP, COUNTER_MEAN).setValue(total / records.length);
+		counters.findCounter(COUNTER_GROUP, COUNTER_LARGEST).setValue(largest);
+		return counters;
+	}
+
+	/**
+	 * @param partition	the partition number
+	 * @return			the counter name for the partition
+	 */
+	public static String counterName(int partition) {
+		return String.format("partition-%05d", partition);
+	}
+
+	private static Logger logger() {
+		return LoggerFactory.getLogger(PartitionSkewReport.class);
+	}
+}
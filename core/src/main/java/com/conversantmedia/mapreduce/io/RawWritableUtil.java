@@ -0,0 +1,182 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.io.BinaryComparable;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.ByteWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.ShortWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.VIntWritable;
+import org.apache.hadoop.io.VLongWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.util.hash.Hash;
+import org.apache.hadoop.util.hash.MurmurHash;
+
+import com.conversantmedia.mapreduce.input.FileLineWritable;
+
+/**
+ * Utilities for working with serialized {@link WritableComparable} keys
+ * without deserializing them.
+ *
+ */
+public final class RawWritableUtil {
+
+	/**
+	 * Determines the number of bytes a serialized key occupies.
+	 */
+	public interface SerializedLength {
+
+		/**
+		 * @param b				the buffer containing the serialized key
+		 * @param s				offset of the key's first byte
+		 * @return				the number of bytes the key occupies
+		 * @throws IOException	if the length cannot be decoded
+		 */
+		int length(byte[] b, int s) throws IOException;
+	}
+
+	private static final Map<Class<?>, SerializedLength> LENGTHS = new HashMap<>();
+
+	private static final Hash MURMUR = MurmurHash.getInstance();
+
+	static {
+		LENGTHS.put(NullWritable.class, fixed(0));
+		LENGTHS.put(BooleanWritable.class, fixed(1));
+		LENGTHS.put(ByteWritable.class, fixed(1));
+		LENGTHS.put(ShortWritable.class, fixed(2));
+		LENGTHS.put(IntWritable.class, fixed(4));
+		LENGTHS.put(FloatWritable.class, fixed(4));
+		LENGTHS.put(LongWritable.class, fixed(8));
+		LENGTHS.put(DoubleWritable.class, fixed(8));
+
+		SerializedLength vint = new SerializedLength() {
+			@Override
+			public int length(byte[] b, int s) {
+				return WritableUtils.decodeVIntSize(b[s]);
+			}
+		};
+		LENGTHS.put(VIntWritable.class, vint);
+		LENGTHS.put(VLongWritable.class, vint);
+
+		// vint length followed by the UTF-8 bytes
+		LENGTHS.put(Text.class, new SerializedLength() {
+			@Override
+			public int length(byte[] b, int s) throws IOException {
+				return WritableUtils.decodeVIntSize(b[s]) + WritableComparator.readVInt(b, s);
+			}
+		});
+
+		// Text file name (or negative vint file index) followed by a vlong offset
+		LENGTHS.put(FileLineWritable.class, new SerializedLength() {
+			@Override
+			public int length(byte[] b, int s) throws IOException {
+				int n = WritableUtils.decodeVIntSize(b[s]) + Math.max(WritableComparator.readVInt(b, s), 0);
+				return n + WritableUtils.decodeVIntSize(b[s + n]);
+			}
+		});
+
+		// 4-byte length followed by the bytes
+		LENGTHS.put(BytesWritable.class, new SerializedLength() {
+			@Override
+			public int length(byte[] b, int s) {
+				return 4 + WritableComparator.readInt(b, s);
+			}
+		});
+	}
+
+	private RawWritableUtil() {}
+
+	/**
+	 * Locates the serialized length function for the supplied type.
+	 * @param c		the key type
+	 * @return		the length function, or <code>null</code> if the
+	 * 				serialized length for this type is not known.
+	 */
+	public static SerializedLength serializedLengthFor(Class<?> c) {
+		return c == null? null : LENGTHS.get(c);
+	}
+
+	/**
+	 * Locates the raw comparator registered with {@link WritableComparator#define}
+	 * for the supplied type.
+	 * @param c		the key type
+	 * @return		the registered comparator, or <code>null</code> if none is registered
+	 * 				and comparisons would require deserialization.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static <T> RawComparator<T> rawComparatorFor(Class<?> c) {
+		if (c == null || !WritableComparable.class.isAssignableFrom(c)) {
+			return null;
+		}
+		WritableComparator comparator = WritableComparator.get((Class<? extends WritableComparable>)c);
+		// Without a registered comparator, the default instance deserializes both keys.
+		return comparator.getClass() == WritableComparator.class? null : comparator;
+	}
+
+	/**
+	 * Hashes the serialized form of the key with murmur hash. Bytes are taken
+	 * directly from {@link BinaryComparable} keys, otherwise the key is written
+	 * to the supplied buffer.
+	 * @param key		the key to hash
+	 * @param buffer	scratch buffer for serializing the key
+	 * @return			the hash
+	 */
+	public static int murmurHash(Writable key, DataOutputBuffer buffer) {
+		if (key instanceof BinaryComparable) {
+			BinaryComparable bytes = (BinaryComparable)key;
+			return MURMUR.hash(bytes.getBytes(), bytes.getLength(), 0);
+		}
+		try {
+			buffer.reset();
+			key.write(buffer);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return MURMUR.hash(buffer.getData(), buffer.getLength(), 0);
+	}
+
+	private static SerializedLength fixed(final int length) {
+		return new SerializedLength() {
+			@Override
+			public int length(byte[] b, int s) {
+				return length;
+			}
+		};
+	}
+}
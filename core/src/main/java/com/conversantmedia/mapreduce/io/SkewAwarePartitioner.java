@@ -0,0 +1,378 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BinaryComparable;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueLineRecordReader;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hash partitions {@link CompositeSortKey} keys on their group key, as the
+ * {@link CompositeSortKey.GroupHashPartitioner} does, but spreads the records of
+ * heavy hitter group keys across several consecutive reducers so a few hot keys
+ * don't leave one reducer straggling. Records of a hot key are assigned one of its
+ * reducers by the hash of their sort key.
+ * <p>
+ * Hot keys are found at submit time by {@link #writeHotKeyFile(Job)}, which samples
+ * the map output group keys (see {@link TotalOrderGroupPartitioner} for how) into
+ * {@link SpaceSavingCounter}s. A key taking more than a reducer's fair share of the
+ * sample is split over as many reducers as it has fair shares. The hot keys are
+ * shipped to tasks on the distributed cache.
+ * <p>
+ * Since a hot key's records reach several reducers, each produces a partial result
+ * for it. If a merge reducer is configured, {@link #newMergeJob(Job, Configuration)} builds the
+ * follow-up job that groups the first job's output by key through it; annotated tools
+ * run it automatically. Partition sizes are reported through {@link PartitionSkewReport}.
+ * <p>
+ * Enable with <code>@Partitioner(skewAware=true)</code>.
+ *
+ * @param <T>	the value type
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public final class SkewAwarePartitioner<T> extends Partitioner<CompositeSortKey, T>
+	implements Configurable {
+
+	public static final String CONF_KEY_ENABLED = "com.conversantmedia.mapreduce.io.skew.enabled";
+	public static final String CONF_KEY_SAMPLES = "com.conversantmedia.mapreduce.io.skew.samples";
+	public static final String CONF_KEY_MAX_SPLITS = "com.conversantmedia.mapreduce.io.skew.maxsplits";
+	public static final String CONF_KEY_COUNTERS = "com.conversantmedia.mapreduce.io.skew.counters";
+	public static final String CONF_KEY_HOTKEY_FILE = "com.conversantmedia.mapreduce.io.skew.file";
+	public static final String CONF_KEY_MERGE_REDUCER = "com.conversantmedia.mapreduce.io.skew.merge.reducer";
+	public static final String CONF_KEY_MERGE_OUTPUT = "com.conversantmedia.mapreduce.io.skew.merge.output";
+
+	public static final int DEFAULT_SAMPLES = 10000;
+	public static final int DEFAULT_MAX_SPLITS = 10;
+	public static final int DEFAULT_COUNTERS = 1000;
+
+	// Settings the merge job needs to read and rewrite the job's output
+	private static final String[] MERGE_CONF_KEYS = {
+		CommonConfigurationKeysPublic.IO_SERIALIZATIONS_KEY,
+		FileOutputFormat.COMPRESS,
+		FileOutputFormat.COMPRESS_CODEC,
+		FileOutputFormat.COMPRESS_TYPE,
+		TextOutputFormat.SEPERATOR,
+		"tmpjars"
+	};
+
+	private Configuration conf;
+
+	// Hot group keys sorted by murmur hash, with their bytes as hashed and the
+	// number of reducers each is spread over
+	private int[] hotKeyHashes;
+	private byte[][] hotKeyBytes;
+	private int[] hotKeySpreads;
+
+	private final DataOutputBuffer buffer = new DataOutputBuffer();
+
+	/**
+	 * Use skew-aware partitioning for this job. Also enables the
+	 * {@link PartitionSkewReport}.
+	 * @param job		the job to configure
+	 * @param samples	the number of map output keys to sample
+	 */
+	public static void enable(Job job, int samples) {
+		job.getConfiguration().setBoolean(CONF_KEY_ENABLED, true);
+		job.getConfiguration().setInt(CONF_KEY_SAMPLES, samples);
+		job.setPartitionerClass(SkewAwarePartitioner.class);
+		PartitionSkewReport.enable(job);
+	}
+
+	/**
+	 * @param conf	the job configuration
+	 * @return		<code>true</code> if skew-aware partitioning is enabled
+	 */
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(CONF_KEY_ENABLED, false);
+	}
+
+	/**
+	 * @param job		the job to configure
+	 * @param reducer	reducer merging the partial results of hot keys
+	 */
+	public static void setMergeReducer(Job job, Class<? extends Reducer> reducer) {
+		job.getConfiguration().setClass(CONF_KEY_MERGE_REDUCER, reducer, Reducer.class);
+	}
+
+	/**
+	 * Samples the job's map output group keys and writes the hot keys with their
+	 * reducer counts to a file placed on the distributed cache. Uses
+	 * {@link #CONF_KEY_HOTKEY_FILE} for the file if set, otherwise a new file under
+	 * <code>hadoop.tmp.dir</code> that is removed when the file system is closed.
+	 * @param job		the configured job, prior to submission
+	 * @return			the hot key file
+	 * @throws IOException			if the input can't be sampled or the file written
+	 * @throws InterruptedException	if interrupted while sampling
+	 */
+	public static Path writeHotKeyFile(Job job) throws IOException, InterruptedException {
+		Configuration conf = job.getConfiguration();
+		Path file = GroupKeySampler.sideFile(conf, CONF_KEY_HOTKEY_FILE, "hotkeys");
+
+		long start = System.currentTimeMillis();
+		SpaceSavingCounter<WritableComparable> counter = new SpaceSavingCounter<>(
+				conf.getInt(CONF_KEY_COUNTERS, DEFAULT_COUNTERS));
+		for (WritableComparable key : GroupKeySampler.sample(job,
+				conf.getInt(CONF_KEY_SAMPLES, DEFAULT_SAMPLES), conf.getInt(CONF_KEY_MAX_SPLITS, DEFAULT_MAX_SPLITS))) {
+			counter.offer(key);
+		}
+		int written = writeHotKeys(conf, file, counter, job.getNumReduceTasks());
+		logger().info("Wrote [" + written + "] hot keys from [" + counter.getTotal() + "] sampled keys to ["
+				+ file + "] in " + (System.currentTimeMillis() - start) + "ms.");
+
+		return GroupKeySampler.distribute(job, file, CONF_KEY_HOTKEY_FILE);
+	}
+
+	/**
+	 * Writes each key exceeding a partition's fair share of the counted total,
+	 * with the number of partitions to spread it over.
+	 * @return	the number of hot keys written
+	 */
+	static int writeHotKeys(Configuration conf, Path file, SpaceSavingCounter<WritableComparable> counter,
+			int numPartitions) throws IOException {
+		SequenceFile.Writer writer = SequenceFile.createWriter(conf, SequenceFile.Writer.file(file),
+				SequenceFile.Writer.keyClass(GroupKeySampler.groupKeyClass(conf)),
+				SequenceFile.Writer.valueClass(IntWritable.class));
+		int written = 0;
+		try {
+			long fairShare = counter.getTotal() / Math.max(1, numPartitions);
+			List<WritableComparable> hitters = counter.heavyHitters(fairShare + 1);
+			for (WritableComparable key : hitters) {
+				int spread = (int)Math.min(numPartitions,
+						(counter.estimate(key) * numPartitions + counter.getTotal() - 1) / counter.getTotal());
+				if (spread > 1) {
+					writer.append(key, new IntWritable(spread));
+					written++;
+				}
+			}
+		}
+		finally {
+			writer.close();
+		}
+		return written;
+	}
+
+	/**
+	 * Builds the job merging the partial results of the given, completed, job. It reads
+	 * the job's output, which must be written with a <code>SequenceFileOutputFormat</code>
+	 * or <code>TextOutputFormat</code>, and groups it by key through the configured
+	 * merge reducer into {@link #CONF_KEY_MERGE_OUTPUT}, by default the job's output
+	 * path suffixed with <code>-merged</code>.
+	 * <p>
+	 * The merge job is built from the base configuration rather than the job's, so it
+	 * doesn't inherit the job's mapper, combiner, comparators or resources. Only the
+	 * output key and value classes, output format and its settings, the job jar and
+	 * any <code>-libjars</code> are copied over.
+	 * @param job		the skew-aware job
+	 * @param baseConf	the configuration to build the merge job from, usually the tool's
+	 * @return			the merge job, or <code>null</code> if no merge reducer is configured
+	 * @throws IOException	if the job can't be created
+	 */
+	public static Job newMergeJob(Job job, Configuration baseConf) throws IOException {
+		Configuration conf = job.getConfiguration();
+		Class<? extends Reducer> reducer = conf.getClass(CONF_KEY_MERGE_REDUCER, null, Reducer.class);
+		if (reducer == null) {
+			return null;
+		}
+		Path input = FileOutputFormat.getOutputPath(job);
+		Path output = new Path(conf.get(CONF_KEY_MERGE_OUTPUT, input + "-merged"));
+
+		Job merge = Job.getInstance(new Configuration(baseConf), job.getJobName() + "-merge");
+		Configuration mergeConf = merge.getConfiguration();
+		for (String name : MERGE_CONF_KEYS) {
+			String value = conf.get(name);
+			if (value != null) {
+				mergeConf.set(name, value);
+			}
+		}
+
+		try {
+			merge.setOutputFormatClass(job.getOutputFormatClass());
+			merge.setOutputKeyClass(job.getOutputKeyClass());
+			merge.setOutputValueClass(job.getOutputValueClass());
+			if (SequenceFileOutputFormat.class.isAssignableFrom(job.getOutputFormatClass())) {
+				merge.setInputFormatClass(SequenceFileInputFormat.class);
+				merge.setMapOutputKeyClass(job.getOutputKeyClass());
+				merge.setMapOutputValueClass(job.getOutputValueClass());
+			}
+			else if (TextOutputFormat.class.isAssignableFrom(job.getOutputFormatClass())) {
+				merge.setInputFormatClass(KeyValueTextInputFormat.class);
+				mergeConf.set(KeyValueLineRecordReader.KEY_VALUE_SEPERATOR,
+						conf.get(TextOutputFormat.SEPERATOR, "\t"));
+				merge.setMapOutputKeyClass(Text.class);
+				merge.setMapOutputValueClass(Text.class);
+			}
+			else {
+				throw new IOException("Cannot merge the output of " + job.getOutputFormatClass().getName());
+			}
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+
+		// The job jar is set on the job's configuration, not the base one
+		if (job.getJar() != null) {
+			merge.setJar(job.getJar());
+		}
+		else {
+			merge.setJarByClass(reducer);
+		}
+		merge.setMapperClass(Mapper.class);
+		merge.setReducerClass(reducer);
+		merge.setPartitionerClass(HashPartitioner.class);
+		merge.setNumReduceTasks(job.getNumReduceTasks());
+		FileInputFormat.setInputPaths(merge, input);
+		FileOutputFormat.setOutputPath(merge, output);
+		return merge;
+	}
+
+	@Override
+	public int getPartition(CompositeSortKey key, T value, int numPartitions) {
+		WritableComparable groupKey = key.getGroupKey();
+		int hash = RawWritableUtil.murmurHash(groupKey, buffer);
+		int partition = hash & Integer.MAX_VALUE;
+		int spread = spreadOf(groupKey, hash);
+		if (spread > 1) {
+			partition += (RawWritableUtil.murmurHash(key.getSortKey(), buffer) & Integer.MAX_VALUE) % spread;
+		}
+		return (partition & Integer.MAX_VALUE) % numPartitions;
+	}
+
+	// Looks the key up by its hash, confirming a hit on the bytes the hash was
+	// computed from, which murmurHash has just left in the buffer
+	private int spreadOf(WritableComparable groupKey, int hash) {
+		int i = Arrays.binarySearch(hotKeyHashes, hash);
+		if (i < 0) {
+			return 1;
+		}
+		while (i > 0 && hotKeyHashes[i - 1] == hash) {
+			i--;
+		}
+		byte[] bytes;
+		int length;
+		if (groupKey instanceof BinaryComparable) {
+			bytes = ((BinaryComparable)groupKey).getBytes();
+			length = ((BinaryComparable)groupKey).getLength();
+		}
+		else {
+			bytes = buffer.getData();
+			length = buffer.getLength();
+		}
+		for (; i < hotKeyHashes.length && hotKeyHashes[i] == hash; i++) {
+			byte[] hotKey = hotKeyBytes[i];
+			if (WritableComparator.compareBytes(hotKey, 0, hotKey.length, bytes, 0, length) == 0) {
+				return hotKeySpreads[i];
+			}
+		}
+		return 1;
+	}
+
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+		try {
+			readHotKeys(conf);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read hot key file", e);
+		}
+	}
+
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+
+	private void readHotKeys(Configuration conf) throws IOException {
+		List<Integer> hashes = new ArrayList<>();
+		List<byte[]> keys = new ArrayList<>();
+		List<Integer> spreads = new ArrayList<>();
+		String fileName = conf.get(CONF_KEY_HOTKEY_FILE);
+		if (fileName != null) {
+			Path file = GroupKeySampler.localCopy(conf, new Path(fileName));
+			WritableComparable key = ReflectionUtils.newInstance(GroupKeySampler.groupKeyClass(conf), conf);
+			IntWritable spread = new IntWritable();
+			SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+			try {
+				while (reader.next(key, spread)) {
+					hashes.add(RawWritableUtil.murmurHash(key, buffer));
+					if (key instanceof BinaryComparable) {
+						BinaryComparable bytes = (BinaryComparable)key;
+						keys.add(Arrays.copyOf(bytes.getBytes(), bytes.getLength()));
+					}
+					else {
+						keys.add(Arrays.copyOf(buffer.getData(), buffer.getLength()));
+					}
+					spreads.add(spread.get());
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+
+		// Sort by hash, carrying each key's position in the low word.
+		// Empty if nothing was sampled, for plain hash partitioning.
+		long[] order = new long[hashes.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = (long)hashes.get(i) << 32 | i;
+		}
+		Arrays.sort(order);
+		hotKeyHashes = new int[order.length];
+		hotKeyBytes = new byte[order.length][];
+		hotKeySpreads = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			int index = (int)order[i];
+			hotKeyHashes[i] = hashes.get(index);
+			hotKeyBytes[i] = keys.get(index);
+			hotKeySpreads[i] = spreads.get(index);
+		}
+	}
+
+	private static Logger logger() {
+		return LoggerFactory.getLogger(SkewAwarePartitioner.class);
+	}
+}
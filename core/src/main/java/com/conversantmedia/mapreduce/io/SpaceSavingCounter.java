@@ -0,0 +1,147 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate counts of the most frequent items of a stream in bounded memory,
+ * using the space-saving algorithm (Metwally et al.). At most <code>capacity</code>
+ * items are tracked; when full, the least counted item is replaced and the newcomer
+ * inherits its count as an over-estimate. Any item occurring more than
+ * <code>total / capacity</code> times is guaranteed to be tracked.
+ * <p>
+ * Items must implement <code>equals</code> and <code>hashCode</code>, and must
+ * not be modified once offered. Not thread safe.
+ *
+ * @param <K> the item type
+ */
+public final class SpaceSavingCounter<K> {
+
+	private final int capacity;
+
+	private final Map<K, Counter<K>> counters;
+
+	private long total;
+
+	public SpaceSavingCounter(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.counters = new HashMap<>(capacity * 2);
+	}
+
+	/**
+	 * Counts one occurrence of the item.
+	 * @param item	the item
+	 */
+	public void offer(K item) {
+		total++;
+		Counter<K> counter = counters.get(item);
+		if (counter != null) {
+			counter.count++;
+			return;
+		}
+		if (counters.size() < capacity) {
+			counters.put(item, new Counter<>(item, 1, 0));
+			return;
+		}
+		// Replace the least counted item
+		Counter<K> min = null;
+		for (Counter<K> c : counters.values()) {
+			if (min == null || c.count < min.count) {
+				min = c;
+			}
+		}
+		counters.remove(min.item);
+		counters.put(item, new Counter<>(item, min.count + 1, min.count));
+	}
+
+	/**
+	 * @return	the number of items offered
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param item	the item
+	 * @return		the estimated count, an upper bound on the true count if
+	 * 				tracked, otherwise zero
+	 */
+	public long estimate(K item) {
+		Counter<K> counter = counters.get(item);
+		return counter == null? 0 : counter.count;
+	}
+
+	/**
+	 * @param item	the item
+	 * @return		the count the estimate may exceed the true count by
+	 */
+	public long error(K item) {
+		Counter<K> counter = counters.get(item);
+		return counter == null? 0 : counter.error;
+	}
+
+	/**
+	 * @param minCount	the minimum guaranteed count, i.e. estimate less error
+	 * @return			items certain to have occurred at least <code>minCount</code>
+	 * 					times, most frequent first
+	 */
+	public List<K> heavyHitters(long minCount) {
+		List<Counter<K>> hitters = new ArrayList<>();
+		for (Counter<K> c : counters.values()) {
+			if (c.count - c.error >= minCount) {
+				hitters.add(c);
+			}
+		}
+		Collections.sort(hitters, new Comparator<Counter<K>>() {
+			@Override
+			public int compare(Counter<K> c1, Counter<K> c2) {
+				return Long.compare(c2.count, c1.count);
+			}
+		});
+		List<K> items = new ArrayList<>(hitters.size());
+		for (Counter<K> c : hitters) {
+			items.add(c.item);
+		}
+		return items;
+	}
+
+	private static final class Counter<K> {
+		private final K item;
+		private long count;
+		private final long error;
+
+		Counter(K item, long count, long error) {
+			this.item = item;
+			this.count = count;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Partitions {@link CompositeSortKey} keys by range of group key so that reducer
+ * outputs are in total order relative to each other, and a well sampled key
+ * space is spread evenly across reducers.
+ * <p>
+ * Split points are chosen at submit time by {@link #writePartitionFile(Job)}: the
+ * job's mapper is run over the leading records of a sample of the input splits
+ * and the group keys it emits are sorted and divided into ranges. Input already
+ * ordered by group key within each split won't sample well. The split points
+ * are written to a file shipped on the distributed cache, and each key is routed
+ * by binary search of its serialized group key against the serialized split
+ * points using the group key's raw comparator.
+ * <p>
+ * Enable with <code>@Partitioner(totalOrder=true)</code>, which samples automatically
+ * before the job is launched. Since sampling runs the mapper in the submitting JVM,
+ * mappers depending on distributed cache resources can't be sampled.
+ *
+ * @param <T>	the value type
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public final class TotalOrderGroupPartitioner<T> extends Partitioner<CompositeSortKey, T>
+	implements Configurable {
+
+	public static final String CONF_KEY_ENABLED = "com.conversantmedia.mapreduce.io.totalorder.enabled";
+	public static final String CONF_KEY_SAMPLES = "com.conversantmedia.mapreduce.io.totalorder.samples";
+	public static final String CONF_KEY_MAX_SPLITS = "com.conversantmedia.mapreduce.io.totalorder.maxsplits";
+	public static final String CONF_KEY_PARTITION_FILE = "com.conversantmedia.mapreduce.io.totalorder.file";
+
+	public static final int DEFAULT_SAMPLES = 10000;
+	public static final int DEFAULT_MAX_SPLITS = 10;
+
+	private Configuration conf;
+
+	// Serialized group keys, in order
+	private byte[][] splitPoints;
+	private RawComparator comparator;
+
+	private final DataOutputBuffer buffer = new DataOutputBuffer();
+
+	/**
+	 * Use total order partitioning for this job.
+	 * @param job		the job to configure
+	 * @param samples	the number of map output keys to sample
+	 */
+	public static void enable(Job job, int samples) {
+		job.getConfiguration().setBoolean(CONF_KEY_ENABLED, true);
+		job.getConfiguration().setInt(CONF_KEY_SAMPLES, samples);
+		job.setPartitionerClass(TotalOrderGroupPartitioner.class);
+	}
+
+	/**
+	 * @param conf	the job configuration
+	 * @return		<code>true</code> if total order partitioning is enabled
+	 */
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(CONF_KEY_ENABLED, false);
+	}
+
+	/**
+	 * Samples the job's map output group keys and writes the split points to a
+	 * file placed on the distributed cache. Uses {@link #CONF_KEY_PARTITION_FILE} for
+	 * the file if set, otherwise a new file under <code>hadoop.tmp.dir</code>
+	 * that is removed when the file system is closed.
+	 * @param job		the configured job, prior to submission
+	 * @return			the partition file
+	 * @throws IOException			if the input can't be sampled or the file written
+	 * @throws InterruptedException	if interrupted while sampling
+	 */
+	public static Path writePartitionFile(Job job) throws IOException, InterruptedException {
+		Configuration conf = job.getConfiguration();
+		Path file = GroupKeySampler.sideFile(conf, CONF_KEY_PARTITION_FILE, "partitions");
+
+		long start = System.currentTimeMillis();
+		List<WritableComparable> samples = GroupKeySampler.sample(job,
+				conf.getInt(CONF_KEY_SAMPLES, DEFAULT_SAMPLES), conf.getInt(CONF_KEY_MAX_SPLITS, DEFAULT_MAX_SPLITS));
+		int written = writeSplitPoints(conf, file, samples, job.getNumReduceTasks());
+		logger().info("Wrote [" + written + "] split points from [" + samples.size() + "] sampled keys to ["
+				+ file + "] in " + (System.currentTimeMillis() - start) + "ms.");
+
+		return GroupKeySampler.distribute(job, file, CONF_KEY_PARTITION_FILE);
+	}
+
+	/**
+	 * Writes <code>numPartitions - 1</code> evenly spaced, distinct group keys from
+	 * the samples as split points. Fewer are written if there aren't enough distinct
+	 * keys, leaving the last partitions empty.
+	 * @return	the number of split points written
+	 */
+	static int writeSplitPoints(Configuration conf, Path file, List<WritableComparable> samples,
+			int numPartitions) throws IOException {
+		Class<?> groupKeyClass = GroupKeySampler.groupKeyClass(conf);
+		Collections.sort(samples);
+
+		SequenceFile.Writer writer = SequenceFile.createWriter(conf, SequenceFile.Writer.file(file),
+				SequenceFile.Writer.keyClass(groupKeyClass), SequenceFile.Writer.valueClass(NullWritable.class));
+		int written = 0;
+		try {
+			float step = samples.size() / (float)numPartitions;
+			int last = -1;
+			for (int i = 1; i < numPartitions && !samples.isEmpty(); i++) {
+				int k = Math.max(Math.round(step * i), last + 1);
+				while (k < samples.size() && last >= 0 && samples.get(k).compareTo(samples.get(last)) == 0) {
+					k++;
+				}
+				if (k >= samples.size()) {
+					break;
+				}
+				writer.append(samples.get(k), NullWritable.get());
+				written++;
+				last = k;
+			}
+		}
+		finally {
+			writer.close();
+		}
+		return written;
+	}
+
+	@Override
+	public int getPartition(CompositeSortKey key, T value, int numPartitions) {
+		if (splitPoints.length >= numPartitions) {
+			throw new IllegalStateException("Partition file has [" + splitPoints.length
+					+ "] split points for [" + numPartitions + "] partitions");
+		}
+		buffer.reset();
+		try {
+			key.getGroupKey().write(buffer);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		int low = 0;
+		int high = splitPoints.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int compare = comparator.compare(splitPoints[mid], 0, splitPoints[mid].length,
+					buffer.getData(), 0, buffer.getLength());
+			if (compare < 0) {
+				low = mid + 1;
+			}
+			else if (compare > 0) {
+				high = mid - 1;
+			}
+			else {
+				// Keys equal to a split point start the next partition
+				return mid + 1;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+		Class<? extends WritableComparable> groupKeyClass = GroupKeySampler.groupKeyClass(conf);
+		this.comparator = WritableComparator.get(groupKeyClass);
+		try {
+			this.splitPoints = readSplitPoints(conf, groupKeyClass);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read partition file", e);
+		}
+	}
+
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+
+	private static byte[][] readSplitPoints(Configuration conf, Class<? extends WritableComparable> groupKeyClass)
+			throws IOException {
+		String fileName = conf.get(CONF_KEY_PARTITION_FILE);
+		if (fileName == null) {
+			throw new IOException("No partition file configured. Was " + TotalOrderGroupPartitioner.class.getSimpleName()
+					+ ".writePartitionFile() called before submitting?");
+		}
+		Path file = GroupKeySampler.localCopy(conf, new Path(fileName));
+
+		List<byte[]> points = new ArrayList<>();
+		WritableComparable key = ReflectionUtils.newInstance(groupKeyClass, conf);
+		DataOutputBuffer out = new DataOutputBuffer();
+		SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+		try {
+			while (reader.next(key)) {
+				out.reset();
+				key.write(out);
+				byte[] point = new byte[out.getLength()];
+				System.arraycopy(out.getData(), 0, point, 0, point.length);
+				points.add(point);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return points.toArray(new byte[points.size()][]);
+	}
+
+	private static Logger logger() {
+		return LoggerFactory.getLogger(TotalOrderGroupPartitioner.class);
+	}
+}
@@ -23,14 +23,12 @@ package com.conversantmedia.mapreduce.io.avro;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
 
 import org.apache.avro.Schema;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.reflect.ReflectDatumReader;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.io.serializer.Deserializer;
@@ -43,13 +41,29 @@ import org.apache.hadoop.io.serializer.Deserializer;
 public class AvroMultiDeserializer<T> extends Configured implements
 		Deserializer<AvroMultiWrapper<T>> {
 
-	private final Map<Integer, DatumReader<T>> readers;
+	// Registered class names, in index order
+	private final String[] schemaNames;
+
+	private final int wireFormat;
+
+	// Readers by schema index, resolved on first use
+	private final DatumReader<T>[] readers;
+
+	// Schema fingerprints by index, when the wire format carries them
+	private final long[] fingerprints;
+
+	private final byte[] fingerprint = new byte[8];
 
 	private BinaryDecoder decoder;
 
 	public AvroMultiDeserializer(Configuration conf) {
 		super(conf);
-		readers = new HashMap<>();
+		schemaNames = MultiSchemaAvroSerialization.getSchemaNames(conf);
+		wireFormat = MultiSchemaAvroSerialization.getWireFormat(conf);
+		@SuppressWarnings("unchecked")
+		DatumReader<T>[] readers = new DatumReader[schemaNames.length];
+		this.readers = readers;
+		this.fingerprints = new long[schemaNames.length];
 	}
 
 	@Override
@@ -59,21 +73,33 @@ public class AvroMultiDeserializer<T> extends Configured implements
 			wrapper = new AvroMultiWrapper<>();
 		}
 
-		// Read in the first byte - the schema index
-		int schemaIndex = decoder.inputStream().read();
+		// Read in the schema index - a single byte in the original format
+		int schemaIndex = wireFormat == MultiSchemaAvroSerialization.WIRE_FORMAT_BYTE?
+				decoder.inputStream().read() : decoder.readInt();
+		DatumReader<T> reader = datumReaderFor(schemaIndex);
+		if (wireFormat == MultiSchemaAvroSerialization.WIRE_FORMAT_VARINT_FINGERPRINT) {
+			decoder.readFixed(fingerprint);
+			if (ByteBuffer.wrap(fingerprint).getLong() != fingerprints[schemaIndex]) {
+				throw new IllegalStateException("Schema fingerprint for index [" + schemaIndex
+						+ "] does not match registered schema [" + schemaNames[schemaIndex] + "].");
+			}
+		}
 
 		// Now hand off the rest to the datum reader for normal deser.
-		DatumReader<T> reader = datumReaderFor(schemaIndex);
 		wrapper.datum(reader.read(wrapper.datum(), decoder));
 		return wrapper;
 	}
 
 	private DatumReader<T> datumReaderFor(int schemaIndex) {
-		DatumReader<T> reader = readers.get(schemaIndex);
+		if (schemaIndex < 0 || schemaIndex >= readers.length) {
+			throw new IllegalStateException("No avro schema registered for data.");
+		}
+		DatumReader<T> reader = readers[schemaIndex];
 		if (reader == null) {
-			Schema schema = MultiSchemaAvroSerialization.getSchemaAt(getConf(), schemaIndex);
-			reader = new ReflectDatumReader<>(schema);
-			readers.put(schemaIndex, reader);
+			Schema schema = MultiSchemaAvroSerialization.getSchema(schemaNames[schemaIndex]);
+			reader = MultiSchemaAvroSerialization.createDatumReader(schemaNames[schemaIndex], schema);
+			readers[schemaIndex] = reader;
+			fingerprints[schemaIndex] = MultiSchemaAvroSerialization.getFingerprint(schema);
 		}
 		return reader;
 	}
@@ -21,15 +21,17 @@ package com.conversantmedia.mapreduce.io.avro;
  */
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
+import org.apache.avro.Schema;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.EncoderFactory;
-import org.apache.avro.reflect.ReflectDatumWriter;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.io.serializer.Serializer;
@@ -47,7 +49,17 @@ public class AvroMultiSerializer<T>
 	/** An factory for creating Avro datum encoders. */
 	private static final EncoderFactory ENCODER_FACTORY = new EncoderFactory().configureBlockSize(AVRO_ENCODER_BLOCK_SIZE_BYTES);
 
-	private final Map<Class<T>, DatumWriter<T>> writers;
+	// Registered class names, in index order
+	private final String[] schemaNames;
+
+	private final int wireFormat;
+
+	// Index and writer per record class, resolved on first use
+	private final Map<Class<?>, SchemaWriter<T>> writers;
+
+	// The most recently used entry, as jobs usually emit runs of one type
+	private Class<?> lastClass;
+	private SchemaWriter<T> lastWriter;
 
 	private BinaryEncoder encoder;
 
@@ -55,37 +67,88 @@ public class AvroMultiSerializer<T>
 
 	public AvroMultiSerializer(Configuration conf) {
 		super(conf);
-		writers = new HashMap<>();
+		schemaNames = MultiSchemaAvroSerialization.getSchemaNames(conf);
+		wireFormat = MultiSchemaAvroSerialization.getWireFormat(conf);
+		writers = new IdentityHashMap<>();
 	}
 
-	@Override @SuppressWarnings("unchecked")
+	@Override
 	public void serialize(AvroMultiWrapper<T> avroWrapper) throws IOException {
-		DatumWriter<T> writer = datumWriterFor((Class<T>) avroWrapper.datum().getClass());
-		int b = MultiSchemaAvroSerialization.getIndexForSchema(getConf(), avroWrapper.datum().getClass());
-		outputStream.write(b);
-		writer.write(avroWrapper.datum(), encoder);
-		this.encoder.flush();
+		SchemaWriter<T> writer = schemaWriterFor(avroWrapper.datum().getClass());
+		encoder.writeFixed(writer.header);
+		writer.writer.write(avroWrapper.datum(), encoder);
+		// The framework marks the record's end at the stream's position on return
+		encoder.flush();
 	}
 
-	private DatumWriter<T> datumWriterFor(Class<T> c) {
-		DatumWriter<T> writer = writers.get(c);
+	private SchemaWriter<T> schemaWriterFor(Class<?> c) {
+		if (c == lastClass) {
+			return lastWriter;
+		}
+		SchemaWriter<T> writer = writers.get(c);
 		if (writer == null) {
-			// Construct a new reader for this schema.
-			writer = new ReflectDatumWriter<>(c);
+			// Construct a new writer for this schema.
+			int index = MultiSchemaAvroSerialization.getIndexForSchema(schemaNames, c);
+			writer = new SchemaWriter<>(header(index),
+					MultiSchemaAvroSerialization.<T>createDatumWriter(c));
 			writers.put(c, writer);
 		}
+		lastClass = c;
+		lastWriter = writer;
 		return writer;
 	}
 
+	// Encodes the schema tag written ahead of each datum of the schema at this index
+	private byte[] header(int index) {
+		if (wireFormat == MultiSchemaAvroSerialization.WIRE_FORMAT_BYTE) {
+			if (index > 0xff) {
+				throw new IllegalStateException("Schema index [" + index
+						+ "] does not fit the single byte wire format.");
+			}
+			return new byte[] { (byte)index };
+		}
+		try {
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			BinaryEncoder headerEncoder = EncoderFactory.get().directBinaryEncoder(header, null);
+			headerEncoder.writeInt(index);
+			if (wireFormat == MultiSchemaAvroSerialization.WIRE_FORMAT_VARINT_FINGERPRINT) {
+				Schema schema = MultiSchemaAvroSerialization.getSchema(schemaNames[index]);
+				headerEncoder.writeFixed(ByteBuffer.allocate(8)
+						.putLong(MultiSchemaAvroSerialization.getFingerprint(schema)).array());
+			}
+			headerEncoder.flush();
+			return header.toByteArray();
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public void open(OutputStream outputStream) throws IOException {
 		this.outputStream = outputStream;
+		// Buffered, so a record reaches the stream in a few bulk writes rather
+		// than one write per field
 		this.encoder = ENCODER_FACTORY.binaryEncoder(outputStream, this.encoder);
 	}
 
 	@Override
 	public void close() throws IOException {
+		this.encoder.flush();
 		this.outputStream.close();
 	}
 
+	private static final class SchemaWriter<T> {
+
+		// The schema tag, written ahead of each datum
+		private final byte[] header;
+
+		private final DatumWriter<T> writer;
+
+		SchemaWriter(byte[] header, DatumWriter<T> writer) {
+			this.header = header;
+			this.writer = writer;
+		}
+	}
+
 }
@@ -0,0 +1,176 @@
+package com.conversantmedia.mapreduce.io.avro;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryData;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.mapreduce.Job;
+
+/**
+ * Compares serialized {@link AvroMultiWrapper} keys without decoding them:
+ * first by registered schema index, then with {@link BinaryData#compare}
+ * under that schema, which follows the Avro sort order (including fields
+ * marked <code>"order": "ignore"</code> or <code>"descending"</code>).
+ * <p>
+ * Hadoop has no default comparator for non-Writable keys, so it must be set
+ * for jobs using multi-schema map output keys, e.g. with {@link #setSortComparator}.
+ * Subclasses overriding {@link #compare(AvroMultiWrapper, AvroMultiWrapper)} have
+ * their serialized keys deserialized and compared with it.
+ *
+ * @param <T> Avro record type
+ */
+public class AvroMultiWrapperComparator<T> extends Configured implements RawComparator<AvroMultiWrapper<T>> {
+
+	private String[] schemaNames;
+
+	private int wireFormat;
+
+	// Schemas by index, resolved on first use
+	private Schema[] schemas;
+
+	private final Map<Class<?>, Integer> indices = new IdentityHashMap<>();
+
+	// Only used by subclasses, which are compared deserialized
+	private final DataInputBuffer buffer = new DataInputBuffer();
+	private AvroMultiDeserializer<T> deserializer;
+	private AvroMultiWrapper<T> key1;
+	private AvroMultiWrapper<T> key2;
+
+	/**
+	 * Sets this as the job's sort comparator.
+	 * @param job	the job to be configured
+	 */
+	public static void setSortComparator(Job job) {
+		job.setSortComparatorClass(AvroMultiWrapperComparator.class);
+	}
+
+	@Override
+	public void setConf(Configuration conf) {
+		super.setConf(conf);
+		if (conf != null) {
+			schemaNames = MultiSchemaAvroSerialization.getSchemaNames(conf);
+			wireFormat = MultiSchemaAvroSerialization.getWireFormat(conf);
+			schemas = new Schema[schemaNames.length];
+			indices.clear();
+			deserializer = null;
+		}
+	}
+
+	@Override
+	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+		// The raw comparison only matches this class's own ordering
+		if (getClass() != AvroMultiWrapperComparator.class) {
+			return compareDeserialized(b1, s1, l1, b2, s2, l2);
+		}
+		int index1, index2;
+		if (wireFormat == MultiSchemaAvroSerialization.WIRE_FORMAT_BYTE) {
+			index1 = b1[s1++] & 0xff;
+			index2 = b2[s2++] & 0xff;
+		}
+		else {
+			long header1 = readIndex(b1, s1);
+			long header2 = readIndex(b2, s2);
+			index1 = (int)header1;
+			index2 = (int)header2;
+			s1 += (int)(header1 >>> 32);
+			s2 += (int)(header2 >>> 32);
+			if (wireFormat == MultiSchemaAvroSerialization.WIRE_FORMAT_VARINT_FINGERPRINT) {
+				s1 += 8;
+				s2 += 8;
+			}
+		}
+		if (index1 != index2) {
+			return index1 < index2? -1 : 1;
+		}
+		return BinaryData.compare(b1, s1, b2, s2, schemaAt(index1));
+	}
+
+	@Override
+	public int compare(AvroMultiWrapper<T> o1, AvroMultiWrapper<T> o2) {
+		int index1 = indexOf(o1.datum().getClass());
+		int index2 = indexOf(o2.datum().getClass());
+		if (index1 != index2) {
+			return index1 < index2? -1 : 1;
+		}
+		return ReflectData.get().compare(o1.datum(), o2.datum(), schemaAt(index1));
+	}
+
+	private int compareDeserialized(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+		try {
+			if (deserializer == null) {
+				deserializer = new AvroMultiDeserializer<>(getConf());
+				deserializer.open(buffer);
+			}
+			buffer.reset(b1, s1, l1);
+			key1 = deserializer.deserialize(key1);
+			buffer.reset(b2, s2, l2);
+			key2 = deserializer.deserialize(key2);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return compare(key1, key2);
+	}
+
+	// Decodes the zig-zag varint index, returning its length in the high word
+	private static long readIndex(byte[] b, int s) {
+		int value = 0;
+		int length = 0;
+		int shift = 0;
+		int next;
+		do {
+			next = b[s + length++] & 0xff;
+			value |= (next & 0x7f) << shift;
+			shift += 7;
+		} while ((next & 0x80) != 0 && length < 5);
+		int index = (value >>> 1) ^ -(value & 1);
+		return (long)length << 32 | (index & 0xffffffffL);
+	}
+
+	private Schema schemaAt(int index) {
+		if (index < 0 || index >= schemas.length) {
+			throw new IllegalStateException("No avro schema registered for data.");
+		}
+		Schema schema = schemas[index];
+		if (schema == null) {
+			schema = MultiSchemaAvroSerialization.getSchema(schemaNames[index]);
+			schemas[index] = schema;
+		}
+		return schema;
+	}
+
+	private int indexOf(Class<?> c) {
+		Integer index = indices.get(c);
+		if (index == null) {
+			index = MultiSchemaAvroSerialization.getIndexForSchema(schemaNames, c);
+			indices.put(c, index);
+		}
+		return index;
+	}
+}
@@ -43,6 +43,9 @@ import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.conversantmedia.mapreduce.input.InputLister;
+import com.conversantmedia.mapreduce.input.SplitPacker;
+
 /**
  * Custom implementation/extension of the combine file input format designed to
  * combine small Avro files and skip any empty files or bad records.
@@ -53,11 +56,11 @@ public class CombineAvroKeyFileInputFormat<T> extends CombineFileInputFormat<Avr
 
 	@Override
 	protected List<FileStatus> listStatus(JobContext job) throws IOException {
-		// Get the list from our parent...
+		// List in parallel, sharing the listing with the driver
 		List<FileStatus> result = new ArrayList<>();
 
 		// Loop through and remove any that are empty
-		for (FileStatus file : super.listStatus(job)) {
+		for (FileStatus file : InputLister.get(job.getConfiguration()).listInputFiles(job)) {
 			if (file.getLen() < 1) {
 				logger().error("Skipping Empty file: " + file.getPath());
 			}
@@ -69,6 +72,14 @@ public class CombineAvroKeyFileInputFormat<T> extends CombineFileInputFormat<Avr
 		return result;
 	}
 
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		if (SplitPacker.isEnabled(job.getConfiguration())) {
+			return SplitPacker.getSplits(job, listStatus(job));
+		}
+		return super.getSplits(job);
+	}
+
 	@Override
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public RecordReader<AvroKey<T>, NullWritable> createRecordReader(InputSplit split,
@@ -27,6 +27,7 @@ import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.util.ReflectionUtils;
 
+import com.conversantmedia.mapreduce.io.PartitionSkewReport;
 import com.conversantmedia.mapreduce.tool.AnnotatedDelegatingComponent;
 
 /**
@@ -52,6 +53,7 @@ public final class AnnotatedDelegatingReducer<K1, V1, K2, V2> extends Reducer<K1
 		setup(context);
 		getDelegate(context).run(context);
 		cleanup(context);
+		PartitionSkewReport.report(context);
 	}
 
 	@Override
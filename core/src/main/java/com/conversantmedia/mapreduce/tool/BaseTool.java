@@ -29,7 +29,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
 
@@ -42,11 +41,16 @@ import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.util.Tool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.conversantmedia.mapreduce.input.InputLister;
+import com.conversantmedia.mapreduce.io.PartitionSkewReport;
+import com.conversantmedia.mapreduce.io.SkewAwarePartitioner;
+import com.conversantmedia.mapreduce.io.TotalOrderGroupPartitioner;
 import com.conversantmedia.mapreduce.tool.ToolContext.ToolContextListener;
 import com.conversantmedia.mapreduce.tool.event.DefaultToolEvent;
 import com.conversantmedia.mapreduce.tool.event.ToolEvent;
@@ -147,6 +151,9 @@ public abstract class BaseTool<T extends ToolContext>
 			// Notify any listeners before initializing job
 			notifyListeners(Event.BEFORE_INIT_JOB, context, null);
 
+			// List inputs once, for both job submission and archiving
+			InputLister.enableCache(getConf());
+
 			// Initialize our job
 			Job job = initJob(context);
 			// We can override (the runjob script does) which jar to use instead of using running driver class
@@ -169,9 +176,32 @@ public abstract class BaseTool<T extends ToolContext>
 				return 0;
 			}
 
+			// Sample split points or hot keys if a sampling partitioner is enabled
+			if (TotalOrderGroupPartitioner.isEnabled(job.getConfiguration())) {
+				TotalOrderGroupPartitioner.writePartitionFile(job);
+			}
+			if (SkewAwarePartitioner.isEnabled(job.getConfiguration())) {
+				SkewAwarePartitioner.writeHotKeyFile(job);
+			}
+
 			// Launches the job
 			launchJob(context, job);
 
+			// Summarize the partition sizes, which task counters can't aggregate
+			if (context.getReturnCode() == 0 && PartitionSkewReport.isEnabled(job.getConfiguration())) {
+				for (Counter counter : PartitionSkewReport.summarize(job).getGroup(PartitionSkewReport.COUNTER_GROUP)) {
+					logger().info("Partition skew " + counter.getName() + ": " + counter.getValue());
+				}
+			}
+
+			// Merge the partial results of hot keys if requested
+			if (context.getReturnCode() == 0 && SkewAwarePartitioner.isEnabled(job.getConfiguration())) {
+				Job mergeJob = SkewAwarePartitioner.newMergeJob(job, getConf());
+				if (mergeJob != null) {
+					context.setReturnCode(mergeJob.waitForCompletion(true)? 0 : 1);
+				}
+			}
+
 			// Now move our input to archive
 			if (context.getReturnCode() == 0  && context.getArchive() != null) {
 				archiveInputs(context);
@@ -190,6 +220,9 @@ public abstract class BaseTool<T extends ToolContext>
 			logger().error("Problem running tool: " + e.getMessage(), e);
 			notifyListeners(Event.EXCEPTION, context, e);
 		}
+		finally {
+			InputLister.release(getConf());
+		}
 
 		return context.getReturnCode();
 	}
@@ -251,29 +284,14 @@ public abstract class BaseTool<T extends ToolContext>
 	}
 
 	protected List<FileStatus> getInputFiles(Path input) throws IOException {
-		FileSystem fs = FileSystem.get(getConf());
-		List<FileStatus> status = new ArrayList<>();
-		if (fs.exists(input)) {
-			FileStatus inputStatus = fs.getFileStatus(input);
-			if (inputStatus.isDirectory()) {
-				// Move all files under this directory
-				status = Arrays.asList(fs.listStatus(input));
-			}
-			else {
-				status.add(inputStatus);
-			}
-		}
-		// Must be a glob path
-		else {
-			FileStatus[] statusAry = fs.globStatus(input);
-			status.addAll(Arrays.asList(statusAry));
-		}
-		return status;
+		return InputLister.get(getConf()).listPath(input);
 	}
 
 	/**
 	 * Moves our inputs into the 'archive' path for
 	 * long term storage, or perhaps further processing.
+	 * Inputs listed by the job's input format are not listed
+	 * again, so files arriving while the job ran are left behind.
 	 * @param context		the job's driver context bean
 	 * @throws IOException	if the inputs cannot be moved to
 	 * 			the archive path.
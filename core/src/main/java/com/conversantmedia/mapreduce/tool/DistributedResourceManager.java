@@ -22,20 +22,22 @@ package com.conversantmedia.mapreduce.tool;
 
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.MappedByteBuffer;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 
 import org.apache.commons.beanutils.ConvertUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
@@ -44,10 +46,15 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.ConversionNotSupportedException;
 import org.springframework.beans.SimpleTypeConverter;
 import org.springframework.core.annotation.AnnotationUtils;
 
+import com.conversantmedia.mapreduce.io.MappedFile;
+import com.conversantmedia.mapreduce.io.MappedLookupTable;
 import com.conversantmedia.mapreduce.tool.annotation.Distribute;
 import com.conversantmedia.mapreduce.tool.annotation.handler.MaraAnnotationUtil;
 import com.google.common.primitives.Primitives;
@@ -62,6 +69,15 @@ public class DistributedResourceManager extends Configured {
 
 	public static final String CONFIGKEYBASE_RESOURCE =
 			DistributedResourceManager.class.getPackage().toString() + "@Resource;";
+
+	public static final String CONFIGKEYBASE_SHARED =
+			DistributedResourceManager.class.getPackage().toString() + "@Resource.shared;";
+
+	public static final String COUNTER_GROUP = "Resource load time (ms)";
+
+	// Decoded resources shared by the tasks run in this JVM, keyed by file and modification time
+	private static final Map<String, SoftReference<Object>> SHARED_RESOURCES = new HashMap<>();
+
 	private final Job job;
 
 	protected DistributedResourceManager(Job job) {
@@ -84,7 +100,7 @@ public class DistributedResourceManager extends Configured {
 			field.setAccessible(true);
 			Object value = field.get(annotatedBean);
 			if (value != null) {
-				registerResource(key, value);
+				registerResource(key, value, distribute.shared());
 			}
 		}
 
@@ -97,7 +113,7 @@ public class DistributedResourceManager extends Configured {
 			String key = StringUtils.isBlank(distribute.name())? defaultName : distribute.name();
 			Object value = method.invoke(annotatedBean);
 			if (value != null) {
-				registerResource(key, value);
+				registerResource(key, value, distribute.shared());
 			}
 		}
 	}
@@ -113,6 +129,20 @@ public class DistributedResourceManager extends Configured {
 	 *
 	 */
 	public void registerResource(String key, Object value) throws IOException {
+		registerResource(key, value, false);
+	}
+
+	/**
+	 * Register this resource, optionally sharing its decoded instance between
+	 * tasks that run in the same JVM.
+	 * 
+	 * @param key 			the resource key. Usually a property/field name.
+	 * @param value 		the resource.
+	 * @param shared		whether to decode the resource once per JVM
+	 * @throws IOException	if resource cannot be serialized
+	 * @see Distribute#shared()
+	 */
+	public void registerResource(String key, Object value, boolean shared) throws IOException {
 		if (value == null) {
 			return;
 		}
@@ -141,26 +171,28 @@ public class DistributedResourceManager extends Configured {
 			// Distribute the file
 			distributeLocalFile(file);
 		}
-		// Check if it's serializable
-		else if (value instanceof java.io.Serializable) {
-			// Serialize the object and place it on the distributed cache
-			ObjectOutputStream out = null;
-			try {
-				File beanSerFile = File.createTempFile(value.getClass().getName(), ".ser");
-				FileOutputStream fileOut = new FileOutputStream(beanSerFile);
-				out = new ObjectOutputStream(fileOut);
-				out.writeObject(value);
-				valueString = beanSerFile.getName();
-
-				// Distribute the file
-				distributeLocalFile(beanSerFile);
-			}
-			finally {
-				IOUtils.closeQuietly(out);
-			}
+		// Compile lookup tables to a file mapped by the tasks
+		else if (value instanceof MappedLookupTable.Builder) {
+			File tableFile = File.createTempFile(MappedLookupTable.class.getName(), ".tbl");
+			((MappedLookupTable.Builder)value).write(tableFile);
+			valueString = tableFile.getName();
+
+			// Distribute the file
+			distributeLocalFile(tableFile);
 		}
+		// Otherwise encode it and place it on the distributed cache
 		else {
-			throw new IllegalArgumentException("Resource [" + key + "] is not serializable.");
+			ResourceCodec codec = ResourceCodecs.forType(getConf(), value.getClass());
+			if (codec == null) {
+				throw new IllegalArgumentException("Resource [" + key + "] is not serializable.");
+			}
+			File beanSerFile = File.createTempFile(value.getClass().getName(), ResourceCodecs.suffix(getConf()));
+			ResourceCodecs.write(getConf(), codec, value, beanSerFile);
+			valueString = beanSerFile.getName() + VALUE_SEP + codec.getClass().getName();
+			getConf().setBoolean(CONFIGKEYBASE_SHARED + key, shared);
+
+			// Distribute the file
+			distributeLocalFile(beanSerFile);
 		}
 
 		// Setup the config key
@@ -184,22 +216,62 @@ public class DistributedResourceManager extends Configured {
 	 * @param config			the job configuration
 	 * @throws ToolException	if there are errors with reflection or the cache
 	 */
-	@SuppressWarnings("unchecked")
 	public static void initializeResources(Object bean, Configuration config) throws ToolException {
+		initializeResources(bean, config, null);
+	}
+
+	/**
+	 * Locates the resources for a running task and sets them on the provided
+	 * mapper instance, reporting the time taken to load each as a counter in
+	 * the {@link #COUNTER_GROUP} group.
+	 * 
+	 * @param bean				the object to inspect for resource annotations
+	 * @param context			the task context
+	 * @throws ToolException	if there are errors with reflection or the cache
+	 */
+	public static void initializeResources(Object bean, TaskAttemptContext context) throws ToolException {
+		initializeResources(bean, context.getConfiguration(), context);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void initializeResources(Object bean, final Configuration config,
+			final TaskAttemptContext context) throws ToolException {
 		try {
 			List<Field> fields = MaraAnnotationUtil.INSTANCE.findAnnotatedFields(bean.getClass(), Resource.class);
-			Path[] files = org.apache.hadoop.util.StringUtils.stringToPath(config.getStrings(MRJobConfig.CACHE_LOCALFILES));
+			final Path[] files = org.apache.hadoop.util.StringUtils.stringToPath(config.getStrings(MRJobConfig.CACHE_LOCALFILES));
 			for (Field field : fields) {
 				Resource resAnnotation = field.getAnnotation(Resource.class);
-				String key = StringUtils.isEmpty(resAnnotation.name())? field.getName() : resAnnotation.name();
+				final String key = StringUtils.isEmpty(resAnnotation.name())? field.getName() : resAnnotation.name();
 				String resourceId = config.get(CONFIGKEYBASE_RESOURCE + key);
 				if (resourceId != null) {
 					String[] parts = StringUtils.split(resourceId, VALUE_SEP);
-					String className = parts[0];
-					String valueString = parts[1];
-
-					// Retrieve the value
-					Object value = getResourceValue(field, valueString, className, files);
+					final String className = parts[0];
+					final String valueString = parts[1];
+					final String codecClassName = parts.length > 2? parts[2] : null;
+					final boolean shared = config.getBoolean(CONFIGKEYBASE_SHARED + key, false);
+
+					Object value;
+					if (field.getType() == LazyResource.class) {
+						// Defer retrieval to the first get()
+						final Class<?> type = lazyResourceType(field);
+						value = new LazyResource<>(key, new Callable<Object>() {
+							@Override
+							public Object call() throws Exception {
+								long start = System.currentTimeMillis();
+								Object value = getResourceValue(type, key, valueString, className, codecClassName,
+										shared, files, config);
+								recordLoadTime(context, key, start);
+								return value;
+							}
+						});
+					}
+					else {
+						// Retrieve the value
+						long start = System.currentTimeMillis();
+						value = getResourceValue(field.getType(), field.getName(), valueString, className,
+								codecClassName, shared, files, config);
+						recordLoadTime(context, key, start);
+					}
 
 					setFieldValue(field, bean, value);
 				}
@@ -210,6 +282,28 @@ public class DistributedResourceManager extends Configured {
 		}
 	}
 
+	// The resource type is the LazyResource's type argument
+	private static Class<?> lazyResourceType(Field field) {
+		Type type = field.getGenericType();
+		if (type instanceof ParameterizedType) {
+			Type arg = ((ParameterizedType)type).getActualTypeArguments()[0];
+			if (arg instanceof ParameterizedType) {
+				arg = ((ParameterizedType)arg).getRawType();
+			}
+			if (arg instanceof Class) {
+				return (Class<?>)arg;
+			}
+		}
+		throw new IllegalArgumentException("Cannot determine the resource type of field ["
+				+ field.getName() + "]");
+	}
+
+	private static void recordLoadTime(TaskAttemptContext context, String key, long start) {
+		if (context != null) {
+			context.getCounter(COUNTER_GROUP, key).increment(System.currentTimeMillis() - start);
+		}
+	}
+
 	public static void setFieldValue(Field field, Object bean, Object value)
 			throws IllegalAccessException {
 		// Set it on the field
@@ -226,49 +320,77 @@ public class DistributedResourceManager extends Configured {
 		field.set(bean, value);
 	}
 
-	private static Object getResourceValue(Field field, String valueString,
-			String originalTypeClassname, Path[] distFiles) throws IOException, ClassNotFoundException {
+	private static Object getResourceValue(Class<?> type, String name, String valueString,
+			String originalTypeClassname, String codecClassName, boolean shared, Path[] distFiles,
+			Configuration config) throws IOException, ClassNotFoundException {
 
 		// First, determine our approach:
 		Object value = null;
-		if (field.getType().isAssignableFrom(String.class)) {
+		if (type.isAssignableFrom(String.class)) {
 			value = valueString;
 		}
-		else if (ClassUtils.isPrimitiveOrWrapper(field.getType())) {
-			value = ConvertUtils.convert(valueString, field.getType());
+		else if (ClassUtils.isPrimitiveOrWrapper(type)) {
+			value = ConvertUtils.convert(valueString, type);
 		}
 		else {
 			Path path = distributedFilePath(valueString, distFiles);
 
 			// This is something on the distributed cache (or illegal)
-			if (field.getType() == Path.class) {
+			if (type == Path.class) {
 				value = path;
 			}
-			else if (field.getType() == File.class ){
+			else if (type == File.class ){
 				value = new File(path.toUri());
 			}
-			// Deserialize .ser file
-			else if (field.getType().isAssignableFrom(Class.forName(originalTypeClassname))) {
-				ObjectInputStream in = null;
-				try {
-					File beanSerFile = new File(path.toUri().getPath());
-					FileInputStream fileIn = new FileInputStream(beanSerFile);
-					in = new ObjectInputStream(fileIn);
-					value = in.readObject();
-				}
-				finally {
-					IOUtils.closeQuietly(in);
-				}
+			// Memory-mapped, read through the page cache rather than the heap
+			else if (type == MappedFile.class) {
+				value = MappedFile.open(new File(path.toUri().getPath()));
+			}
+			else if (type.isAssignableFrom(MappedByteBuffer.class)) {
+				value = MappedFile.map(new File(path.toUri().getPath()));
+			}
+			else if (type == MappedLookupTable.class) {
+				value = MappedLookupTable.open(new File(path.toUri().getPath()));
+			}
+			// Decode the .ser file
+			else if (type.isAssignableFrom(Class.forName(originalTypeClassname))) {
+				ResourceCodec codec = ResourceCodecs.newCodec(config, codecClassName);
+				File file = new File(path.toUri().getPath());
+				Class<?> originalType = Class.forName(originalTypeClassname);
+				value = shared? sharedValue(config, codec, originalType, file)
+						: ResourceCodecs.read(config, codec, originalType, file);
 			}
 			else {
 				throw new IllegalArgumentException("Cannot locate resource for field ["
-						+ field.getName() + "]");
+						+ name + "]");
 			}
 		}
 
 		return value;
 	}
 
+	// Decodes the file once per JVM, for as long as the decoded value stays reachable or memory allows
+	private static Object sharedValue(Configuration config, ResourceCodec codec, Class<?> type, File file)
+			throws IOException {
+		String cacheKey = file.getAbsolutePath() + "@" + file.lastModified();
+		synchronized (SHARED_RESOURCES) {
+			SoftReference<Object> ref = SHARED_RESOURCES.get(cacheKey);
+			Object value = ref == null? null : ref.get();
+			if (value == null) {
+				value = ResourceCodecs.read(config, codec, type, file);
+				SHARED_RESOURCES.put(cacheKey, new SoftReference<>(value));
+			}
+			else {
+				logger().info("Sharing decoded resource [" + file.getName() + "]");
+			}
+			return value;
+		}
+	}
+
+	private static Logger logger() {
+		return LoggerFactory.getLogger(DistributedResourceManager.class);
+	}
+
 	private static Path distributedFilePath(String fileName, Path[] distFiles) throws IOException {
 		for (Path path : distFiles) {
 			if (StringUtils.equals(fileName,path.getName())) {
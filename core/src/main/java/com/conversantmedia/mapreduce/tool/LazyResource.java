@@ -0,0 +1,92 @@
+package com.conversantmedia.mapreduce.tool;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.concurrent.Callable;
+
+/**
+ * A holder for a <code>@Resource</code> that is only retrieved, and decoded if
+ * need be, on the first call to {@link #get()}. Declare the field with this type
+ * to defer loading resources a task may not use:
+ * <pre>
+ * &#64;Resource
+ * private LazyResource&lt;Map&lt;String, String&gt;&gt; blacklist;
+ * </pre>
+ * The resource type is taken from the field's type argument. The load time is
+ * reported in the task counters, as it is for resources injected eagerly.
+ *
+ * @param <T>	the resource type
+ */
+public final class LazyResource<T> {
+
+	private final String name;
+
+	private volatile Callable<T> loader;
+
+	private volatile T value;
+
+	LazyResource(String name, Callable<T> loader) {
+		this.name = name;
+		this.loader = loader;
+	}
+
+	/**
+	 * Wraps an already loaded value, e.g. for unit tests.
+	 * @param value	the value
+	 * @return		the holder
+	 */
+	public static <T> LazyResource<T> of(T value) {
+		LazyResource<T> resource = new LazyResource<>(null, null);
+		resource.value = value;
+		return resource;
+	}
+
+	/**
+	 * @return	the resource, loading it on the first call
+	 * @throws IllegalStateException	if the resource cannot be loaded
+	 */
+	public T get() {
+		T result = value;
+		if (result == null && loader != null) {
+			synchronized (this) {
+				result = value;
+				if (result == null && loader != null) {
+					try {
+						value = result = loader.call();
+						loader = null;
+					}
+					catch (Exception e) {
+						throw new IllegalStateException("Unable to load resource [" + name + "]", e);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return	whether the resource has been loaded
+	 */
+	public boolean isLoaded() {
+		return loader == null;
+	}
+}
@@ -0,0 +1,59 @@
+package com.conversantmedia.mapreduce.tool;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes <code>@Distribute</code> values that are written to the distributed
+ * cache, and decodes them for <code>@Resource</code> fields in the tasks.
+ * Implementations need a no-argument constructor and may implement
+ * {@link org.apache.hadoop.conf.Configurable} to receive the job configuration.
+ * Register custom codecs with {@link ResourceCodecs#register}.
+ */
+public interface ResourceCodec {
+
+	/**
+	 * @param type	the class of a value being distributed
+	 * @return		<code>true</code> if this codec can encode values of the type
+	 */
+	boolean accepts(Class<?> type);
+
+	/**
+	 * Writes the value. The stream is buffered and closed by the caller.
+	 * @param value			the value
+	 * @param out			the destination
+	 * @throws IOException	if the value cannot be written
+	 */
+	void encode(Object value, OutputStream out) throws IOException;
+
+	/**
+	 * Reads a value written by {@link #encode}.
+	 * @param type			the class of the value that was written
+	 * @param in			the source
+	 * @return				the value
+	 * @throws IOException	if the value cannot be read
+	 */
+	Object decode(Class<?> type, InputStream in) throws IOException;
+}
@@ -0,0 +1,279 @@
+package com.conversantmedia.mapreduce.tool;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Selects and applies the {@link ResourceCodec} used for a distributed value.
+ * Codecs registered in the configuration are consulted first, followed by the
+ * built-in {@link WritableCodec}, {@link AvroCodec} and finally {@link JavaCodec}
+ * for any remaining {@link Serializable} value.
+ * <p>
+ * Encoded files are optionally compressed with a Hadoop {@link CompressionCodec}.
+ * The codec's extension is appended to the file name, so the tasks pick the
+ * decompressor from the name alone.
+ */
+public final class ResourceCodecs {
+
+	public static final String CONF_KEY_CODECS = "com.conversantmedia.mapreduce.tool.resource.codecs";
+
+	public static final String CONF_KEY_COMPRESSION = "com.conversantmedia.mapreduce.tool.resource.compression";
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final Class<?>[] BUILT_IN = { WritableCodec.class, AvroCodec.class, JavaCodec.class };
+
+	private ResourceCodecs() {}
+
+	/**
+	 * Adds a codec, consulted ahead of the built-in codecs and any codecs
+	 * registered before it.
+	 * @param conf	the job configuration
+	 * @param codec	the codec class
+	 */
+	public static void register(Configuration conf, Class<? extends ResourceCodec> codec) {
+		String codecs = conf.get(CONF_KEY_CODECS);
+		conf.set(CONF_KEY_CODECS, codecs == null? codec.getName() : codec.getName() + "," + codecs);
+	}
+
+	/**
+	 * Compresses encoded resources.
+	 * @param conf	the job configuration
+	 * @param codec	the compression codec, or <code>null</code> for none
+	 */
+	public static void setCompression(Configuration conf, Class<? extends CompressionCodec> codec) {
+		if (codec == null) {
+			conf.unset(CONF_KEY_COMPRESSION);
+		}
+		else {
+			conf.setClass(CONF_KEY_COMPRESSION, codec, CompressionCodec.class);
+		}
+	}
+
+	/**
+	 * @param conf	the job configuration
+	 * @param type	the class of the value being distributed
+	 * @return		the first codec accepting the type, or <code>null</code> if none does
+	 */
+	public static ResourceCodec forType(Configuration conf, Class<?> type) {
+		List<Class<?>> candidates = new ArrayList<>();
+		for (Class<?> codec : conf.getClasses(CONF_KEY_CODECS)) {
+			candidates.add(codec);
+		}
+		for (Class<?> codec : BUILT_IN) {
+			candidates.add(codec);
+		}
+		for (Class<?> codecClass : candidates) {
+			ResourceCodec codec = (ResourceCodec)ReflectionUtils.newInstance(codecClass, conf);
+			if (codec.accepts(type)) {
+				return codec;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param conf		the job configuration
+	 * @param className	the codec class name, or <code>null</code> for resources
+	 * 					written by Java serialization
+	 * @return			the codec
+	 * @throws ClassNotFoundException	if the codec isn't on the classpath
+	 */
+	public static ResourceCodec newCodec(Configuration conf, String className) throws ClassNotFoundException {
+		Class<?> codecClass = className == null? JavaCodec.class : conf.getClassByName(className);
+		return (ResourceCodec)ReflectionUtils.newInstance(codecClass, conf);
+	}
+
+	/**
+	 * @param conf	the job configuration
+	 * @return		the file suffix for encoded resources, including any compression extension
+	 */
+	public static String suffix(Configuration conf) {
+		CompressionCodec compression = compression(conf);
+		return compression == null? ".ser" : ".ser" + compression.getDefaultExtension();
+	}
+
+	/**
+	 * Encodes a value to a file named with {@link #suffix}.
+	 * @param conf			the job configuration
+	 * @param codec			the codec
+	 * @param value			the value
+	 * @param file			the destination
+	 * @throws IOException	if the value cannot be written
+	 */
+	public static void write(Configuration conf, ResourceCodec codec, Object value, File file) throws IOException {
+		CompressionCodec compression = compression(conf);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			if (compression != null) {
+				out = compression.createOutputStream(out);
+			}
+			out = new BufferedOutputStream(out, BUFFER_SIZE);
+			codec.encode(value, out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Decodes a value, decompressing it if the file name carries a known
+	 * compression extension.
+	 * @param conf			the job configuration
+	 * @param codec			the codec
+	 * @param type			the class of the value that was written
+	 * @param file			the source
+	 * @return				the value
+	 * @throws IOException	if the value cannot be read
+	 */
+	public static Object read(Configuration conf, ResourceCodec codec, Class<?> type, File file) throws IOException {
+		CompressionCodec compression = new CompressionCodecFactory(conf).getCodec(new Path(file.getPath()));
+		InputStream in = new FileInputStream(file);
+		try {
+			if (compression != null) {
+				in = compression.createInputStream(in);
+			}
+			in = new BufferedInputStream(in, BUFFER_SIZE);
+			return codec.decode(type, in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static CompressionCodec compression(Configuration conf) {
+		Class<? extends CompressionCodec> codecClass = conf.getClass(CONF_KEY_COMPRESSION, null, CompressionCodec.class);
+		return codecClass == null? null : ReflectionUtils.newInstance(codecClass, conf);
+	}
+
+	/**
+	 * Writes {@link Writable} values with their own <code>write</code>, and reads
+	 * them into a new instance created with the no-argument constructor.
+	 */
+	public static class WritableCodec extends Configured implements ResourceCodec {
+
+		@Override
+		public boolean accepts(Class<?> type) {
+			return Writable.class.isAssignableFrom(type);
+		}
+
+		@Override
+		public void encode(Object value, OutputStream out) throws IOException {
+			DataOutputStream data = new DataOutputStream(out);
+			((Writable)value).write(data);
+			data.flush();
+		}
+
+		@Override
+		public Object decode(Class<?> type, InputStream in) throws IOException {
+			Writable value = (Writable)ReflectionUtils.newInstance(type, getConf());
+			value.readFields(new DataInputStream(in));
+			return value;
+		}
+	}
+
+	/**
+	 * Writes generated Avro {@link SpecificRecord} values in the binary encoding.
+	 */
+	public static class AvroCodec implements ResourceCodec {
+
+		@Override
+		public boolean accepts(Class<?> type) {
+			return SpecificRecord.class.isAssignableFrom(type);
+		}
+
+		@Override
+		public void encode(Object value, OutputStream out) throws IOException {
+			Schema schema = ((SpecificRecord)value).getSchema();
+			BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+			new SpecificDatumWriter<Object>(schema).write(value, encoder);
+			encoder.flush();
+		}
+
+		@Override
+		public Object decode(Class<?> type, InputStream in) throws IOException {
+			Schema schema = SpecificData.get().getSchema(type);
+			BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(in, null);
+			return new SpecificDatumReader<Object>(schema).read(null, decoder);
+		}
+	}
+
+	/**
+	 * Java serialization, for any other {@link Serializable} value.
+	 */
+	public static class JavaCodec implements ResourceCodec {
+
+		@Override
+		public boolean accepts(Class<?> type) {
+			return Serializable.class.isAssignableFrom(type);
+		}
+
+		@Override
+		public void encode(Object value, OutputStream out) throws IOException {
+			ObjectOutputStream objects = new ObjectOutputStream(out);
+			objects.writeObject(value);
+			objects.flush();
+		}
+
+		@Override
+		public Object decode(Class<?> type, InputStream in) throws IOException {
+			try {
+				return new ObjectInputStream(in).readObject();
+			}
+			catch (ClassNotFoundException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+}
@@ -29,6 +29,7 @@ import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.springframework.stereotype.Service;
 
+import com.conversantmedia.mapreduce.input.SplitPacker;
 import com.conversantmedia.mapreduce.tool.ToolException;
 import com.conversantmedia.mapreduce.tool.annotation.FileInput;
 
@@ -55,6 +56,10 @@ public class FileInputAnnotationHandler extends AnnotationHandlerBase {
 			// The property used for retrieving the path
 		Object path = this.evaluateExpression(fileInput.path());
 		configureFileInputPaths(job, path);
+
+		if (fileInput.packSplits()) {
+			SplitPacker.enable(job, fileInput.splitSize(), fileInput.maxFilesPerSplit());
+		}
 	}
 
 	private void configureFileInputPaths(Job job, Object value)
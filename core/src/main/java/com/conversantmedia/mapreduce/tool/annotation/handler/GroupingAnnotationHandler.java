@@ -26,6 +26,7 @@ import java.lang.annotation.Annotation;
 import org.apache.hadoop.mapreduce.Job;
 import org.springframework.stereotype.Service;
 
+import com.conversantmedia.mapreduce.io.MultiFieldSortKeySerialization;
 import com.conversantmedia.mapreduce.tool.annotation.Grouping;
 import com.conversantmedia.mapreduce.tool.annotation.JobInfo.NULLCOMPARATOR;
 
@@ -44,6 +45,10 @@ public class GroupingAnnotationHandler extends AnnotationHandlerBase {
 	@Override
 	public void process(Annotation annotation, Job job, Object target) {
 		Grouping grouping = (Grouping)annotation;
+		if (grouping != null
+				&& grouping.fieldCount() > 0) {
+			MultiFieldSortKeySerialization.setGroupFieldCount(job.getConfiguration(), grouping.fieldCount());
+		}
 		if (grouping != null
 				&& grouping.value() != null
 				&& grouping.value() != NULLCOMPARATOR.class) {
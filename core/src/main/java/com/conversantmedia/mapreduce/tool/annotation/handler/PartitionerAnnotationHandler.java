@@ -24,8 +24,12 @@ package com.conversantmedia.mapreduce.tool.annotation.handler;
 import java.lang.annotation.Annotation;
 
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Reducer;
 import org.springframework.stereotype.Service;
 
+import com.conversantmedia.mapreduce.io.PartitionSkewReport;
+import com.conversantmedia.mapreduce.io.SkewAwarePartitioner;
+import com.conversantmedia.mapreduce.io.TotalOrderGroupPartitioner;
 import com.conversantmedia.mapreduce.tool.annotation.Partitioner;
 import com.conversantmedia.mapreduce.tool.annotation.JobInfo.NULLPARTITIONER;
 
@@ -44,11 +48,26 @@ public class PartitionerAnnotationHandler extends AnnotationHandlerBase {
 	@Override
 	public void process(Annotation annotation, Job job, Object target) {
 		Partitioner partitioner = (Partitioner)annotation;
+		if (partitioner != null && partitioner.totalOrder() && partitioner.skewAware()) {
+			throw new IllegalArgumentException("@Partitioner cannot be both totalOrder and skewAware.");
+		}
 		if (partitioner != null
 				&& partitioner.value() != null
 				&& partitioner.value() != NULLPARTITIONER.class) {
 			job.setPartitionerClass(partitioner.value());
 		}
+		if (partitioner != null && partitioner.totalOrder()) {
+			TotalOrderGroupPartitioner.enable(job, partitioner.samples());
+		}
+		if (partitioner != null && partitioner.skewAware()) {
+			SkewAwarePartitioner.enable(job, partitioner.samples());
+			if (partitioner.merge() != Reducer.class) {
+				SkewAwarePartitioner.setMergeReducer(job, partitioner.merge());
+			}
+		}
+		if (partitioner != null && partitioner.skewReport()) {
+			PartitionSkewReport.enable(job);
+		}
 	}
 
 }
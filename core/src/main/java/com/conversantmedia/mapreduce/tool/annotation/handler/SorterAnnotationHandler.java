@@ -26,6 +26,9 @@ import java.lang.annotation.Annotation;
 import org.apache.hadoop.mapreduce.Job;
 import org.springframework.stereotype.Service;
 
+import com.conversantmedia.mapreduce.io.MultiFieldSortKey.Order;
+import com.conversantmedia.mapreduce.io.MultiFieldSortKey.SortField;
+import com.conversantmedia.mapreduce.io.MultiFieldSortKeySerialization;
 import com.conversantmedia.mapreduce.tool.annotation.Sorter;
 import com.conversantmedia.mapreduce.tool.annotation.JobInfo.NULLCOMPARATOR;
 
@@ -44,6 +47,16 @@ public class SorterAnnotationHandler extends AnnotationHandlerBase {
 	@Override
 	public void process(Annotation annotation, Job job, Object target) {
 		Sorter sorter = (Sorter)annotation;
+		if (sorter != null
+				&& sorter.fields().length > 0) {
+			SortField[] fields = new SortField[sorter.fields().length];
+			for (int i = 0; i < fields.length; i++) {
+				boolean descending = i < sorter.descending().length && sorter.descending()[i];
+				fields[i] = new SortField(sorter.fields()[i], descending? Order.DESCENDING : Order.ASCENDING);
+			}
+			MultiFieldSortKeySerialization.configureSortFields(job, fields);
+		}
+		// An explicit comparator takes precedence
 		if (sorter != null
 				&& sorter.value() != null
 				&& sorter.value() != NULLCOMPARATOR.class) {
@@ -0,0 +1,147 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.*;
+
+public class CombineTextBatchInputFormatTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsLinesInBatches() throws Exception {
+		FileUtils.writeLines(new File(folder.getRoot(), "input/a.txt"), Arrays.asList("one", "two"));
+		FileUtils.writeLines(new File(folder.getRoot(), "input/b.txt"), Arrays.asList("three", "four", "five"));
+
+		Job job = Job.getInstance();
+		FileInputFormat.addInputPath(job, new Path(new File(folder.getRoot(), "input").toURI()));
+		CombineTextBatchInputFormat.setBatchLines(job, 2);
+		TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID());
+
+		CombineTextBatchInputFormat format = new CombineTextBatchInputFormat();
+		List<String> batches = new ArrayList<>();
+		for (InputSplit split : format.getSplits(job)) {
+			try (RecordReader<FileLineWritable, LineBatch> reader = format.createRecordReader(split, context)) {
+				reader.initialize(split, context);
+				while (reader.nextKeyValue()) {
+					FileLineWritable first = reader.getCurrentKey();
+					LineBatch batch = reader.getCurrentValue();
+					assertEquals(first.getOffset(), batch.getOffset(0));
+					StringBuilder lines = new StringBuilder(first.getFileName()).append(':');
+					for (int i = 0; i < batch.size(); i++) {
+						lines.append(' ').append(batch.getString(i)).append('@').append(batch.getOffset(i));
+					}
+					batches.add(lines.toString());
+				}
+			}
+		}
+		assertThat(batches, containsInAnyOrder("a.txt: one@0 two@4", "b.txt: three@0 four@6", "b.txt: five@11"));
+	}
+
+	@Test
+	public void matchesLineReaderAcrossChunks() throws Exception {
+		// Mixed line terminators, long lines and no final terminator
+		Random random = new Random(3);
+		String[] terminators = {"\n", "\r\n", "\r"};
+		StringBuilder text = new StringBuilder();
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			int length = i % 500 == 0? 100000 : random.nextInt(120);
+			StringBuilder line = new StringBuilder();
+			for (int c = 0; c < length; c++) {
+				line.append((char)('a' + random.nextInt(26)));
+			}
+			lines.add("@" + text.length() + ":" + line);
+			// An empty line after \r can't start with \n, which would make a \r\n
+			String terminator = terminators[random.nextInt(terminators.length)];
+			if (line.length() == 0 && text.length() > 0 && text.charAt(text.length() - 1) == '\r') {
+				terminator = "\r";
+			}
+			text.append(line).append(terminator);
+		}
+		lines.add("@" + text.length() + ":last");
+		text.append("last");
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		FileUtils.writeByteArrayToFile(new File(folder.getRoot(), "input/mixed.txt"), bytes);
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(folder.getRoot(), "input/mixed.gz")))) {
+			out.write(bytes);
+		}
+		List<String> expected = new ArrayList<>();
+		for (String line : lines) {
+			expected.add("mixed.txt" + line);
+			expected.add("mixed.gz" + line);
+		}
+
+		Job job = Job.getInstance();
+		FileInputFormat.addInputPath(job, new Path(new File(folder.getRoot(), "input").toURI()));
+		FileInputFormat.setMaxInputSplitSize(job, 7919);
+		CombineTextBatchInputFormat.setBatchLines(job, 100);
+		TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID());
+
+		List<String> actual = new ArrayList<>();
+		CombineTextBatchInputFormat batchFormat = new CombineTextBatchInputFormat();
+		List<InputSplit> splits = batchFormat.getSplits(job);
+		assertTrue(splits.size() > 1);
+		for (InputSplit split : splits) {
+			try (RecordReader<FileLineWritable, LineBatch> reader = batchFormat.createRecordReader(split, context)) {
+				reader.initialize(split, context);
+				while (reader.nextKeyValue()) {
+					LineBatch batch = reader.getCurrentValue();
+					for (int i = 0; i < batch.size(); i++) {
+						actual.add(reader.getCurrentKey().getFileName() + "@" + batch.getOffset(i)
+								+ ":" + batch.getString(i));
+					}
+				}
+			}
+		}
+		Collections.sort(expected);
+		Collections.sort(actual);
+		assertThat(actual, equalTo(expected));
+	}
+}
@@ -0,0 +1,96 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.*;
+
+public class CombineTextFileInputFormatTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsNamedKeys() throws Exception {
+		List<String> keys = readKeys(false);
+		assertThat(keys, containsInAnyOrder("a.txt:0", "a.txt:2", "b.txt:0", "b.txt:2", "b.txt:4"));
+	}
+
+	@Test
+	public void readsFileIndexKeys() throws Exception {
+		// Both files fall in the same split
+		List<String> keys = readKeys(true);
+		int b = keys.contains("#1:4")? 1 : 0;
+		int a = 1 - b;
+		assertThat(keys, containsInAnyOrder("#" + a + ":0", "#" + a + ":2", "#" + b + ":0", "#" + b + ":2", "#" + b + ":4"));
+	}
+
+	private List<String> readKeys(boolean fileIndexKeys) throws Exception {
+		FileUtils.writeLines(new File(folder.getRoot(), "input/a.txt"), Arrays.asList("1", "2"));
+		FileUtils.writeLines(new File(folder.getRoot(), "input/b.txt"), Arrays.asList("3", "4", "5"));
+
+		Job job = Job.getInstance();
+		FileInputFormat.addInputPath(job, new Path(new File(folder.getRoot(), "input").toURI()));
+		CombineTextFileInputFormat.setFileIndexKeys(job, fileIndexKeys);
+		TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID());
+
+		CombineTextFileInputFormat format = new CombineTextFileInputFormat();
+		List<String> keys = new ArrayList<>();
+		for (InputSplit split : format.getSplits(job)) {
+			try (RecordReader<FileLineWritable, Text> reader = format.createRecordReader(split, context)) {
+				reader.initialize(split, context);
+				FileLineWritable previous = null;
+				while (reader.nextKeyValue()) {
+					FileLineWritable key = reader.getCurrentKey();
+					if (previous != null && previous.getFileName() == key.getFileName()
+							&& previous.getFileIndex() == key.getFileIndex()) {
+						// The key is reused within a file
+						assertSame(previous, key);
+					}
+					previous = key;
+					keys.add((key.getFileName() == null? "#" + key.getFileIndex() : key.getFileName())
+							+ ":" + key.getOffset());
+				}
+			}
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,112 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.conversantmedia.mapreduce.io.RawWritableUtil;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.*;
+
+public class FileLineWritableTest {
+
+	// Includes a private use character and one outside the BMP, which sort differently in UTF-16
+	private static final String[] FILES = {"", "a", "ab", "b", "part-m-00000.gz", "part-m-00001.gz",
+			"\uE000.gz", "\uD83D\uDE00.gz"};
+
+	@Test
+	public void roundTripsCompactEncoding() throws IOException {
+		FileLineWritable key = new FileLineWritable("part-m-00000.gz", 300L);
+		byte[] b = serialize(key);
+		// vint length + 15 name bytes + 3 byte vlong, rather than 8 + 2 + 15
+		assertThat(b.length, equalTo(1 + 15 + 3));
+		assertThat(RawWritableUtil.serializedLengthFor(FileLineWritable.class).length(b, 0), equalTo(b.length));
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(b, b.length);
+		FileLineWritable copy = new FileLineWritable();
+		copy.readFields(in);
+		assertThat(copy, equalTo(key));
+	}
+
+	@Test
+	public void roundTripsFileIndexKeys() throws IOException {
+		FileLineWritable key = new FileLineWritable(200, 300L);
+		byte[] b = serialize(key);
+		assertThat(b.length, equalTo(2 + 3));
+		assertThat(RawWritableUtil.serializedLengthFor(FileLineWritable.class).length(b, 0), equalTo(b.length));
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(b, b.length);
+		FileLineWritable copy = new FileLineWritable("reused", 1L);
+		copy.readFields(in);
+		assertThat(copy, equalTo(key));
+		assertNull(copy.getFileName());
+		assertThat(copy.getFileIndex(), equalTo(200));
+	}
+
+	@Test
+	public void rawComparatorMatchesCompareTo() throws IOException {
+		WritableComparator comparator = WritableComparator.get(FileLineWritable.class);
+		assertThat(comparator, instanceOf(FileLineWritable.Comparator.class));
+
+		Random random = new Random(11);
+		long[] offsets = {0, 1, 127, 128, 65535, 1L << 40, Long.MAX_VALUE};
+		FileLineWritable[] keys = new FileLineWritable[200];
+		for (int i = 0; i < keys.length; i++) {
+			long offset = offsets[random.nextInt(offsets.length)];
+			keys[i] = random.nextInt(4) == 0? new FileLineWritable(random.nextInt(200), offset)
+					: new FileLineWritable(FILES[random.nextInt(FILES.length)], offset);
+		}
+		for (FileLineWritable k1 : keys) {
+			byte[] b1 = serialize(k1);
+			for (FileLineWritable k2 : keys) {
+				byte[] b2 = serialize(k2);
+				// Pad the buffers so that offsets are exercised as well
+				byte[] p1 = pad(b1, 3);
+				byte[] p2 = pad(b2, 5);
+				assertThat(Integer.signum(comparator.compare(p1, 3, b1.length, p2, 5, b2.length)),
+						equalTo(Integer.signum(k1.compareTo(k2))));
+			}
+		}
+	}
+
+	private static byte[] serialize(FileLineWritable key) throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		key.write(out);
+		return Arrays.copyOf(out.getData(), out.getLength());
+	}
+
+	private static byte[] pad(byte[] b, int offset) {
+		byte[] padded = new byte[b.length + offset];
+		System.arraycopy(b, 0, padded, offset, b.length);
+		return padded;
+	}
+}
@@ -0,0 +1,85 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.*;
+
+public class InputListerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void listsInputFilesOnceWhenCached() throws Exception {
+		for (String name : new String[] {"a/f1", "a/f2", "a/_SUCCESS", "b/f3", "b/.f3.crc"}) {
+			File file = new File(folder.getRoot(), "input/" + name);
+			file.getParentFile().mkdirs();
+			assertTrue(file.createNewFile());
+		}
+		Configuration conf = new Configuration();
+		InputLister.enableCache(conf);
+		Job job = Job.getInstance(conf);
+		FileInputFormat.addInputPath(job, new Path(new File(folder.getRoot(), "input/*").toURI()));
+
+		assertThat(names(InputLister.get(job.getConfiguration()).listInputFiles(job)),
+				containsInAnyOrder("f1", "f2", "f3"));
+
+		// Later listings of the same directory are served from the cache
+		assertTrue(new File(folder.getRoot(), "input/a/f1").delete());
+		Path dir = new Path(new File(folder.getRoot(), "input/a").toURI());
+		assertThat(names(InputLister.get(conf).listPath(dir)), containsInAnyOrder("f1", "f2", "_SUCCESS"));
+
+		InputLister.release(conf);
+		assertThat(names(InputLister.get(conf).listPath(dir)), containsInAnyOrder("f2", "_SUCCESS"));
+	}
+
+	@Test
+	public void listsGlobMatchesForArchiving() throws Exception {
+		assertTrue(new File(folder.getRoot(), "input/2015-01").mkdirs());
+		assertTrue(new File(folder.getRoot(), "input/2015-02").mkdirs());
+		Path glob = new Path(new File(folder.getRoot(), "input").toURI().toString() + "/2015-*");
+		assertThat(names(InputLister.get(new Configuration()).listPath(glob)),
+				containsInAnyOrder("2015-01", "2015-02"));
+	}
+
+	private static List<String> names(List<FileStatus> statuses) {
+		List<String> names = new ArrayList<>();
+		for (FileStatus status : statuses) {
+			names.add(status.getPath().getName());
+		}
+		return names;
+	}
+}
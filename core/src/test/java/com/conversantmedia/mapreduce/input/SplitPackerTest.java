@@ -0,0 +1,178 @@
+package com.conversantmedia.mapreduce.input;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.*;
+
+public class SplitPackerTest {
+
+	private static final long MB = 1024 * 1024;
+
+	@Test
+	public void packsSmallFilesUniformlyAndLocally() throws Exception {
+		// 3 racks of 4 nodes, files replicated twice on one rack and once off it
+		Random random = new Random(3);
+		List<FileStatus> files = new ArrayList<>();
+		Map<String, Set<String>> hostsByFile = new HashMap<>();
+		for (int i = 0; i < 3000; i++) {
+			int rack = random.nextInt(3);
+			int other = (rack + 1 + random.nextInt(2)) % 3;
+			String[] hosts = {"h" + rack + random.nextInt(2), "h" + rack + (2 + random.nextInt(2)), "h" + other + random.nextInt(4)};
+			String name = "file-" + i;
+			files.add(file(name, 1024 + random.nextInt((int)MB), hosts));
+			hostsByFile.put(name, new HashSet<>(Arrays.asList(hosts)));
+		}
+
+		Job job = Job.getInstance();
+		SplitPacker.enable(job, 32 * MB, 100);
+		List<InputSplit> splits = SplitPacker.getSplits(job, files);
+
+		Set<Path> seen = new HashSet<>();
+		long localBytes = 0;
+		long totalBytes = 0;
+		int filled = 0;
+		for (InputSplit s : splits) {
+			CombineFileSplit split = (CombineFileSplit)s;
+			assertThat(split.getLength(), lessThanOrEqualTo(32 * MB));
+			assertThat(split.getNumPaths(), lessThanOrEqualTo(100));
+			if (split.getLength() >= 32 * MB * SplitPacker.DEFAULT_MIN_FILL) {
+				filled++;
+			}
+			String host = split.getLocations()[0];
+			for (int i = 0; i < split.getNumPaths(); i++) {
+				assertTrue(seen.add(split.getPath(i)));
+				totalBytes += split.getLength(i);
+				if (hostsByFile.get(split.getPath(i).getName()).contains(host)) {
+					localBytes += split.getLength(i);
+				}
+			}
+		}
+		assertThat(seen.size(), equalTo(files.size()));
+		assertThat((double)filled / splits.size(), greaterThan(0.9));
+		assertThat((double)localBytes / totalBytes, greaterThan(0.9));
+	}
+
+	@Test
+	public void splitsOnlySplittableFiles() throws Exception {
+		BlockLocation[] blocks = {
+				new BlockLocation(null, new String[] {"h00"}, new String[] {"/r0/h00:50010"}, 0, 64 * MB),
+				new BlockLocation(null, new String[] {"h01"}, new String[] {"/r0/h01:50010"}, 64 * MB, 36 * MB)};
+		List<FileStatus> files = Arrays.<FileStatus>asList(
+				new LocatedFileStatus(100 * MB, false, 1, 64 * MB, 0, 0, null, null, null, null,
+						new Path("/data/big.txt"), blocks),
+				new LocatedFileStatus(100 * MB, false, 1, 64 * MB, 0, 0, null, null, null, null,
+						new Path("/data/big.gz"), blocks));
+
+		Job job = Job.getInstance();
+		SplitPacker.enable(job, 32 * MB, 0);
+		List<InputSplit> splits = SplitPacker.getSplits(job, files);
+
+		int gzipChunks = 0;
+		int textChunks = 0;
+		for (InputSplit s : splits) {
+			CombineFileSplit split = (CombineFileSplit)s;
+			for (int i = 0; i < split.getNumPaths(); i++) {
+				if (split.getPath(i).getName().endsWith(".gz")) {
+					gzipChunks++;
+					assertThat(split.getLength(i), equalTo(100 * MB));
+				} else {
+					textChunks++;
+					assertThat(split.getLength(i), lessThanOrEqualTo(32 * MB));
+				}
+			}
+		}
+		assertThat(gzipChunks, equalTo(1));
+		// 64MB block in two, 36MB block in 32MB + 4MB
+		assertThat(textChunks, equalTo(4));
+	}
+
+	@Test
+	public void weighsCompressedFilesByEstimatedSize() throws Exception {
+		List<FileStatus> files = new ArrayList<>();
+		String[] hosts = {"h00"};
+		for (int i = 0; i < 4; i++) {
+			files.add(file("log-" + i + ".gz", 10 * MB, hosts));
+			files.add(file("log-" + i + ".txt", 10 * MB, hosts));
+		}
+		BlockLocation[] blocks = {
+				new BlockLocation(null, hosts, new String[] {"/r0/h00:50010"}, 0, 64 * MB),
+				new BlockLocation(null, hosts, new String[] {"/r0/h00:50010"}, 64 * MB, 36 * MB)};
+		files.add(new LocatedFileStatus(100 * MB, false, 1, 64 * MB, 0, 0, null, null, null, null,
+				new Path("/data/big.bz2"), blocks));
+
+		Job job = Job.getInstance();
+		SplitPacker.enable(job, 64 * MB, 0);
+		job.getConfiguration().setFloat(SplitPacker.CONF_KEY_RATIO_PREFIX + "gz", 5f);
+		List<InputSplit> splits = SplitPacker.getSplits(job, files);
+
+		int bzip2Chunks = 0;
+		for (InputSplit s : splits) {
+			CombineFileSplit split = (CombineFileSplit)s;
+			long estimated = 0;
+			for (int i = 0; i < split.getNumPaths(); i++) {
+				String name = split.getPath(i).getName();
+				if (name.endsWith(".gz")) {
+					estimated += split.getLength(i) * 5;
+				} else if (name.endsWith(".bz2")) {
+					bzip2Chunks++;
+					estimated += split.getLength(i) * (long)SplitPacker.DEFAULT_COMPRESSION_RATIO;
+				} else {
+					estimated += split.getLength(i);
+				}
+			}
+			assertThat(estimated, lessThanOrEqualTo(64 * MB));
+		}
+		// 16MB compressed chunks: four from the first block, three from the second
+		assertThat(bzip2Chunks, equalTo(7));
+	}
+
+	private static FileStatus file(String name, long length, String[] hosts) {
+		String[] topology = new String[hosts.length];
+		for (int i = 0; i < hosts.length; i++) {
+			topology[i] = "/r" + hosts[i].charAt(1) + "/" + hosts[i] + ":50010";
+		}
+		BlockLocation block = new BlockLocation(null, hosts, topology, 0, length);
+		return new LocatedFileStatus(length, false, 3, 128 * MB, 0, 0, null, null, null, null,
+				new Path("/data/" + name), new BlockLocation[] { block });
+	}
+}
@@ -20,12 +20,19 @@ package com.conversantmedia.mapreduce.io;
  * #L%
  */
 
+import com.conversantmedia.mapreduce.io.CompositeSortKey.CompositeSortKeyComparator;
 import com.conversantmedia.mapreduce.tool.annotation.MapperService;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.serializer.Deserializer;
+import org.apache.hadoop.io.serializer.Serializer;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
@@ -34,8 +41,11 @@ import org.apache.hadoop.util.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -138,6 +148,297 @@ public class CompositeSortKeyTest {
 		}
 	}
 
+	@Test
+	public void rawComparatorsMatchObjectComparators() throws IOException {
+		Configuration conf = new Configuration();
+		conf.set(CompositeSortKeySerialization.CONF_KEY_GROUPKEY_CLASS, Text.class.getName());
+		conf.set(CompositeSortKeySerialization.CONF_KEY_SORTKEY_CLASS, LongWritable.class.getName());
+
+		List<CompositeSortKeyComparator<Text, LongWritable>> comparators = new ArrayList<>();
+		comparators.add(new CompositeSortKey.NaturalSortComparator<Text, LongWritable>());
+		comparators.add(new CompositeSortKey.ReverseSortComparator<Text, LongWritable>());
+		comparators.add(new CompositeSortKey.GroupingComparator<Text, LongWritable>());
+
+		List<CompositeSortKey<Text, LongWritable>> keys = new ArrayList<>();
+		for (String group : new String[]{"", "A", "AB", "B", "\u00e9t\u00e9"}) {
+			for (long sort : new long[]{Long.MIN_VALUE, -1, 0, 1, 255, 256, Long.MAX_VALUE}) {
+				keys.add(new CompositeSortKey<>(new Text(group), new LongWritable(sort)));
+			}
+		}
+
+		for (CompositeSortKeyComparator<Text, LongWritable> comparator : comparators) {
+			comparator.setConf(conf);
+			assertTrue(comparator.isRawComparable());
+			for (CompositeSortKey<Text, LongWritable> key1 : keys) {
+				for (CompositeSortKey<Text, LongWritable> key2 : keys) {
+					byte[] b1 = WritableUtils.toByteArray(key1);
+					byte[] b2 = WritableUtils.toByteArray(key2);
+					assertThat(key1 + " vs " + key2,
+							Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length)),
+							equalTo(Integer.signum(comparator.compare(key1, key2))));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void rawComparatorHonorsSubclassOrdering() {
+		Configuration conf = new Configuration();
+		conf.set(CompositeSortKeySerialization.CONF_KEY_GROUPKEY_CLASS, Text.class.getName());
+		conf.set(CompositeSortKeySerialization.CONF_KEY_SORTKEY_CLASS, LongWritable.class.getName());
+
+		CompositeSortKey.NaturalSortComparator<Text, LongWritable> comparator =
+				new CompositeSortKey.NaturalSortComparator<Text, LongWritable>() {
+			@Override
+			public int compare(CompositeSortKey<Text, LongWritable> key1, CompositeSortKey<Text, LongWritable> key2) {
+				return key2.compareTo(key1);
+			}
+		};
+		comparator.setConf(conf);
+
+		byte[] a = WritableUtils.toByteArray(new CompositeSortKey<>(new Text("A"), new LongWritable(1)));
+		byte[] b = WritableUtils.toByteArray(new CompositeSortKey<>(new Text("B"), new LongWritable(1)));
+		assertTrue(comparator.compare(a, 0, a.length, b, 0, b.length) > 0);
+	}
+
+	@Test
+	public void rawComparatorFallsBackWithoutRegisteredComparator() {
+		Configuration conf = new Configuration();
+		conf.set(CompositeSortKeySerialization.CONF_KEY_GROUPKEY_CLASS, Text.class.getName());
+		conf.set(CompositeSortKeySerialization.CONF_KEY_SORTKEY_CLASS, OpaqueKey.class.getName());
+
+		CompositeSortKey.NaturalSortComparator<Text, OpaqueKey> comparator =
+				new CompositeSortKey.NaturalSortComparator<>();
+		comparator.setConf(conf);
+		assertFalse(comparator.isRawComparable());
+		assertTrue(comparator.isGroupRawComparable());
+
+		CompositeSortKey<Text, OpaqueKey> A1 = new CompositeSortKey<>(new Text("A"), new OpaqueKey(1));
+		CompositeSortKey<Text, OpaqueKey> A2 = new CompositeSortKey<>(new Text("A"), new OpaqueKey(2));
+		byte[] b1 = WritableUtils.toByteArray(A1);
+		byte[] b2 = WritableUtils.toByteArray(A2);
+		assertTrue(comparator.compare(b1, 0, b1.length, b2, 0, b2.length) < 0);
+		assertTrue(comparator.compare(b2, 0, b2.length, b1, 0, b1.length) > 0);
+	}
+
+	@Test @SuppressWarnings("rawtypes")
+	public void lengthPrefixedLayoutRoundTrip() throws IOException {
+		Configuration conf = new Configuration();
+		Job job = mock(Job.class);
+		when(job.getConfiguration()).thenReturn(conf);
+		CompositeSortKeySerialization.configureMapOutputKey(job, OpaqueKey.class, LongWritable.class,
+				CompositeSortKeySerialization.Layout.GROUP_LENGTH_PREFIXED);
+
+		CompositeSortKey<OpaqueKey, LongWritable> A1 = new CompositeSortKey<>(new OpaqueKey(1), new LongWritable(1));
+		CompositeSortKey<OpaqueKey, LongWritable> A2 = new CompositeSortKey<>(new OpaqueKey(1), new LongWritable(2));
+		CompositeSortKey<OpaqueKey, LongWritable> B1 = new CompositeSortKey<>(new OpaqueKey(2), new LongWritable(1));
+		byte[] a1 = serialize(conf, A1);
+		byte[] a2 = serialize(conf, A2);
+		byte[] b1 = serialize(conf, B1);
+
+		// vint length + 4 byte int + 8 byte long
+		assertThat(a1.length, equalTo(13));
+		assertThat(deserialize(conf, a2), equalTo((CompositeSortKey)A2));
+
+		// Grouping compares the group key bytes even without a raw comparator
+		CompositeSortKey.GroupingComparator<OpaqueKey, LongWritable> grouping = new CompositeSortKey.GroupingComparator<>();
+		grouping.setConf(conf);
+		assertTrue(grouping.isGroupRawComparable());
+		assertThat(grouping.compare(a1, 0, a1.length, a2, 0, a2.length), equalTo(0));
+		assertTrue(grouping.compare(a1, 0, a1.length, b1, 0, b1.length) != 0);
+
+		// ...while the sort falls back to deserializing, skipping the length
+		CompositeSortKey.ReverseSortComparator<OpaqueKey, LongWritable> reverse = new CompositeSortKey.ReverseSortComparator<>();
+		reverse.setConf(conf);
+		assertFalse(reverse.isRawComparable());
+		assertTrue(reverse.compare(a1, 0, a1.length, a2, 0, a2.length) > 0);
+		assertTrue(reverse.compare(a2, 0, a2.length, b1, 0, b1.length) < 0);
+	}
+
+	@Test
+	public void lengthPrefixedRawComparators() throws IOException {
+		Configuration conf = new Configuration();
+		Job job = mock(Job.class);
+		when(job.getConfiguration()).thenReturn(conf);
+		CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, LongWritable.class,
+				CompositeSortKeySerialization.Layout.GROUP_LENGTH_PREFIXED);
+
+		CompositeSortKey.NaturalSortComparator<Text, LongWritable> natural = new CompositeSortKey.NaturalSortComparator<>();
+		natural.setConf(conf);
+		assertTrue(natural.isRawComparable());
+
+		String[] groups = new String[]{"", "A", "AB", "B"};
+		long[] sorts = new long[]{Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE};
+		for (String g1 : groups) {
+			for (long l1 : sorts) {
+				CompositeSortKey<Text, LongWritable> key1 = new CompositeSortKey<>(new Text(g1), new LongWritable(l1));
+				byte[] b1 = serialize(conf, key1);
+				for (String g2 : groups) {
+					for (long l2 : sorts) {
+						CompositeSortKey<Text, LongWritable> key2 = new CompositeSortKey<>(new Text(g2), new LongWritable(l2));
+						byte[] b2 = serialize(conf, key2);
+						assertThat(Integer.signum(natural.compare(b1, 0, b1.length, b2, 0, b2.length)),
+								equalTo(Integer.signum(key1.compareTo(key2))));
+					}
+				}
+			}
+		}
+	}
+
+	@Test @SuppressWarnings("rawtypes")
+	public void normalizedLayoutMatchesObjectComparators() throws IOException {
+		Configuration conf = new Configuration();
+		Job job = mock(Job.class);
+		when(job.getConfiguration()).thenReturn(conf);
+		CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, IntWritable.class);
+		assertThat(CompositeSortKeySerialization.getLayout(conf), equalTo(CompositeSortKeySerialization.Layout.NORMALIZED));
+
+		List<CompositeSortKeyComparator<Text, IntWritable>> comparators = new ArrayList<>();
+		comparators.add(new CompositeSortKey.NaturalSortComparator<Text, IntWritable>());
+		comparators.add(new CompositeSortKey.ReverseSortComparator<Text, IntWritable>());
+		comparators.add(new CompositeSortKey.GroupingComparator<Text, IntWritable>());
+
+		List<CompositeSortKey<Text, IntWritable>> keys = new ArrayList<>();
+		for (String group : new String[]{"", "\u0000", "\u0000\u0000", "A", "A\u0000", "A\u0000B", "AB", "\u00ff", "\u00e9t\u00e9"}) {
+			for (int sort : new int[]{Integer.MIN_VALUE, -256, -1, 0, 1, 255, Integer.MAX_VALUE}) {
+				keys.add(new CompositeSortKey<>(new Text(group), new IntWritable(sort)));
+			}
+		}
+
+		for (CompositeSortKeyComparator<Text, IntWritable> comparator : comparators) {
+			comparator.setConf(conf);
+			assertTrue(comparator.isNormalized());
+			for (CompositeSortKey<Text, IntWritable> key1 : keys) {
+				byte[] b1 = serialize(conf, key1);
+				assertThat(deserialize(conf, b1), equalTo((CompositeSortKey)key1));
+				for (CompositeSortKey<Text, IntWritable> key2 : keys) {
+					byte[] b2 = serialize(conf, key2);
+					assertThat(key1 + " vs " + key2,
+							Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length)),
+							equalTo(Integer.signum(comparator.compare(key1, key2))));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void normalizedLayoutOnlyForSupportedTypes() {
+		Configuration conf = new Configuration();
+		Job job = mock(Job.class);
+		when(job.getConfiguration()).thenReturn(conf);
+		CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, OpaqueKey.class);
+		assertThat(CompositeSortKeySerialization.getLayout(conf), equalTo(CompositeSortKeySerialization.Layout.STANDARD));
+
+		try {
+			CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, OpaqueKey.class,
+					CompositeSortKeySerialization.Layout.NORMALIZED);
+			fail("Expected unsupported type to be rejected");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReverseSortByValueStandardLayout() {
+		Job job = mock(Job.class);
+		when(job.getConfiguration()).thenReturn(driver.getConfiguration());
+		CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, IntWritable.class,
+				CompositeSortKeySerialization.Layout.STANDARD);
+		testReverseSortByValue();
+	}
+
+	@Test
+	public void testNaturalSortByValueLengthPrefixed() {
+		Job job = mock(Job.class);
+		when(job.getConfiguration()).thenReturn(driver.getConfiguration());
+		CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, IntWritable.class,
+				CompositeSortKeySerialization.Layout.GROUP_LENGTH_PREFIXED);
+		testNaturalSortByValue();
+	}
+
+	@Test @SuppressWarnings({ "unchecked", "rawtypes" })
+	public void deserializerReusesKeyInstances() throws IOException {
+		for (CompositeSortKeySerialization.Layout layout : CompositeSortKeySerialization.Layout.values()) {
+			Job job = Job.getInstance();
+			CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, IntWritable.class, layout);
+			Configuration conf = job.getConfiguration();
+
+			DataOutputBuffer out = new DataOutputBuffer();
+			Serializer<CompositeSortKey> serializer = new CompositeSortKeySerialization(conf).getSerializer(CompositeSortKey.class);
+			serializer.open(out);
+			serializer.serialize(new CompositeSortKey<>(new Text("A"), new IntWritable(1)));
+			serializer.serialize(new CompositeSortKey<>(new Text("B"), new IntWritable(2)));
+
+			DataInputBuffer in = new DataInputBuffer();
+			in.reset(out.getData(), out.getLength());
+			Deserializer<CompositeSortKey> deserializer = new CompositeSortKeySerialization(conf).getDeserializer(CompositeSortKey.class);
+			deserializer.open(in);
+			CompositeSortKey first = deserializer.deserialize(null);
+			Object groupKey = first.getGroupKey();
+			Object sortKey = first.getSortKey();
+
+			CompositeSortKey second = deserializer.deserialize(first);
+			assertSame(first, second);
+			assertSame(groupKey, second.getGroupKey());
+			assertSame(sortKey, second.getSortKey());
+			assertThat(second, equalTo((CompositeSortKey)new CompositeSortKey<>(new Text("B"), new IntWritable(2))));
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static byte[] serialize(Configuration conf, CompositeSortKey key) throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		Serializer<CompositeSortKey> serializer = new CompositeSortKeySerialization(conf).getSerializer(CompositeSortKey.class);
+		serializer.open(out);
+		serializer.serialize(key);
+		return Arrays.copyOf(out.getData(), out.getLength());
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static CompositeSortKey deserialize(Configuration conf, byte[] bytes) throws IOException {
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(bytes, bytes.length);
+		Deserializer<CompositeSortKey> deserializer = new CompositeSortKeySerialization(conf).getDeserializer(CompositeSortKey.class);
+		deserializer.open(in);
+		return deserializer.deserialize(null);
+	}
+
+	@Test
+	public void groupHashPartitioner() {
+		CompositeSortKey.GroupHashPartitioner<Text> partitioner = new CompositeSortKey.GroupHashPartitioner<>();
+		int numPartitions = 16;
+		int[] counts = new int[numPartitions];
+		for (int i = 0; i < 1600; i++) {
+			CompositeSortKey<Text, IntWritable> key1 = new CompositeSortKey<>(new Text("group" + i), new IntWritable(1));
+			CompositeSortKey<Text, IntWritable> key2 = new CompositeSortKey<>(new Text("group" + i), new IntWritable(2));
+			int partition = partitioner.getPartition(key1, null, numPartitions);
+			assertThat(partitioner.getPartition(key2, null, numPartitions), equalTo(partition));
+			counts[partition]++;
+		}
+		for (int count : counts) {
+			assertTrue("Poor distribution: " + Arrays.toString(counts), count > 50);
+		}
+
+		// Non-binary group keys hash their serialized form
+		CompositeSortKey<OpaqueKey, IntWritable> opaque1 = new CompositeSortKey<>(new OpaqueKey(7), new IntWritable(1));
+		CompositeSortKey<OpaqueKey, IntWritable> opaque2 = new CompositeSortKey<>(new OpaqueKey(7), new IntWritable(2));
+		assertThat(partitioner.getPartition(opaque1, null, 1000), equalTo(partitioner.getPartition(opaque2, null, 1000)));
+	}
+
+	@Test
+	public void groupHashPartitionerFollowsGroupKeyChanges() {
+		CompositeSortKey.GroupHashPartitioner<Text> partitioner = new CompositeSortKey.GroupHashPartitioner<>();
+		CompositeSortKey<Text, IntWritable> key = new CompositeSortKey<>(new Text("A"), new IntWritable(1));
+		int partitionA = partitioner.getPartition(key, null, 1000);
+
+		key.getGroupKey().set("B");
+		int partitionB = partitioner.getPartition(key, null, 1000);
+		assertThat(partitionB, equalTo(partitioner.getPartition(
+				new CompositeSortKey<>(new Text("B"), new IntWritable(1)), null, 1000)));
+		assertTrue(partitionA != partitionB);
+	}
+
 	@Test
 	public void testNaturalSortByValue() {
 		// Add in a non-sorted order
@@ -235,6 +536,44 @@ public class CompositeSortKeyTest {
 		}
 	}
 
+	/**
+	 * Key type without a registered raw comparator.
+	 */
+	public static class OpaqueKey implements WritableComparable<OpaqueKey> {
+		private int value;
+
+		public OpaqueKey() {}
+
+		public OpaqueKey(int value) {
+			this.value = value;
+		}
+
+		@Override
+		public void write(DataOutput out) throws IOException {
+			out.writeInt(value);
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException {
+			value = in.readInt();
+		}
+
+		@Override
+		public int compareTo(OpaqueKey o) {
+			return Integer.compare(value, o.value);
+		}
+
+		@Override
+		public int hashCode() {
+			return value;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof OpaqueKey && ((OpaqueKey)obj).value == value;
+		}
+	}
+
 	private static final class TestReducer extends Reducer<CompositeSortKey<Text, IntWritable>, Text, Text, NullWritable> {
 
 		@Override
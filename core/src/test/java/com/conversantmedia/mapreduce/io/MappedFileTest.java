@@ -0,0 +1,78 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReadsAcrossSegments() throws IOException {
+		File file = folder.newFile("values.bin");
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			for (int i = 0; i < 100; i++) {
+				out.writeLong(i * 1000L);
+				out.writeByte(i);
+			}
+		}
+
+		// 16 byte segments so longs and copies straddle segment boundaries
+		MappedFile mapped = MappedFile.open(file, 4);
+		assertThat(mapped.length(), equalTo(900L));
+		for (int i = 0; i < 100; i++) {
+			assertThat(mapped.getLong(i * 9L), equalTo(i * 1000L));
+			assertThat(mapped.get(i * 9L + 8), equalTo((byte)i));
+		}
+
+		byte[] expected = new byte[900];
+		MappedByteBuffer buffer = MappedFile.map(file);
+		buffer.get(expected);
+
+		byte[] actual = new byte[900];
+		mapped.get(0, actual, 0, 450);
+		mapped.get(450, actual, 450, 450);
+		assertThat(actual, equalTo(expected));
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testReadPastEnd() throws IOException {
+		File file = folder.newFile("small.bin");
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(new byte[10]);
+		}
+		MappedFile.open(file).get(5, new byte[10], 0, 10);
+	}
+}
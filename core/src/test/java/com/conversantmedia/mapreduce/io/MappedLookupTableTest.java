@@ -0,0 +1,83 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedLookupTableTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLookups() throws IOException {
+		Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < 5000; i++) {
+			map.put("key-" + i, "value-" + i);
+		}
+		File file = folder.newFile("table.tbl");
+		new MappedLookupTable.Builder().putAll(map).put("key-1", "replaced").write(file);
+		map.put("key-1", "replaced");
+
+		MappedLookupTable table = MappedLookupTable.open(file);
+		assertThat(table.size(), equalTo(map.size()));
+		for (Entry<String, String> e : map.entrySet()) {
+			assertThat(table.get(e.getKey()), equalTo(e.getValue()));
+		}
+		assertThat(table.get("missing"), nullValue());
+		assertThat(table.get(new byte[0]), nullValue());
+
+		ByteBuffer value = table.get("key-42".getBytes(StandardCharsets.UTF_8));
+		assertThat(value.remaining(), equalTo(8));
+		assertThat(StandardCharsets.UTF_8.decode(value).toString(), equalTo("value-42"));
+	}
+
+	@Test
+	public void testEmptyTable() throws IOException {
+		File file = folder.newFile("empty.tbl");
+		new MappedLookupTable.Builder().write(file);
+
+		MappedLookupTable table = MappedLookupTable.open(file);
+		assertThat(table.size(), equalTo(0));
+		assertThat(table.containsKey(new byte[] { 1 }), equalTo(false));
+	}
+
+	@Test(expected=IOException.class)
+	public void testNotATable() throws IOException {
+		File file = folder.newFile("other.bin");
+		MappedLookupTable.open(file);
+	}
+}
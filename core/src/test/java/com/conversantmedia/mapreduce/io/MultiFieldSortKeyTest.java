@@ -0,0 +1,207 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.conversantmedia.mapreduce.io.CompositeSortKeyTest.OpaqueKey;
+import com.conversantmedia.mapreduce.io.MultiFieldSortKey.Order;
+import com.conversantmedia.mapreduce.io.MultiFieldSortKey.SortField;
+import com.conversantmedia.mapreduce.tool.annotation.Grouping;
+import com.conversantmedia.mapreduce.tool.annotation.Sorter;
+import com.conversantmedia.mapreduce.tool.annotation.handler.GroupingAnnotationHandler;
+import com.conversantmedia.mapreduce.tool.annotation.handler.SorterAnnotationHandler;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.serializer.Deserializer;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.*;
+
+public class MultiFieldSortKeyTest {
+
+	private static final String[] WORDS = {"", "a", "ab", "a\u0000b", "b", "zz"};
+
+	@Test
+	public void normalizedLayoutMatchesObjectComparators() throws IOException {
+		Job job = Job.getInstance();
+		MultiFieldSortKeySerialization.configureMapOutputKey(job, 2,
+				new SortField(Text.class), new SortField(LongWritable.class, Order.DESCENDING),
+				new SortField(Text.class, Order.DESCENDING), new SortField(IntWritable.class));
+		assertThat(job.getConfiguration().get(MultiFieldSortKeySerialization.CONF_KEY_LAYOUT),
+				equalTo(CompositeSortKeySerialization.Layout.NORMALIZED.name()));
+
+		assertRawComparatorsMatch(job.getConfiguration(), randomKeys(new Random(7)));
+	}
+
+	@Test
+	public void standardLayoutMatchesObjectComparators() throws IOException {
+		Job job = Job.getInstance();
+		MultiFieldSortKeySerialization.configureMapOutputKey(job, 1,
+				new SortField(IntWritable.class, Order.DESCENDING), new SortField(FloatWritable.class),
+				new SortField(LongWritable.class, Order.DESCENDING));
+		assertThat(job.getConfiguration().get(MultiFieldSortKeySerialization.CONF_KEY_LAYOUT),
+				equalTo(CompositeSortKeySerialization.Layout.STANDARD.name()));
+
+		Random random = new Random(11);
+		List<MultiFieldSortKey> keys = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			keys.add(new MultiFieldSortKey(new IntWritable(random.nextInt(3) - 1),
+					new FloatWritable(random.nextInt(3) - 1.5f), new LongWritable(random.nextInt(5) - 2)));
+		}
+		assertRawComparatorsMatch(job.getConfiguration(), keys);
+	}
+
+	@Test
+	public void deserializingFallbackWithoutRawComparator() throws IOException {
+		Job job = Job.getInstance();
+		MultiFieldSortKeySerialization.configureMapOutputKey(job, 1,
+				new SortField(OpaqueKey.class, Order.DESCENDING), new SortField(Text.class));
+
+		Random random = new Random(3);
+		List<MultiFieldSortKey> keys = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			keys.add(new MultiFieldSortKey(new OpaqueKey(random.nextInt(3)),
+					new Text(WORDS[random.nextInt(WORDS.length)])));
+		}
+		assertRawComparatorsMatch(job.getConfiguration(), keys);
+	}
+
+	@Test
+	public void sortOrderAndGrouping() throws IOException {
+		Job job = Job.getInstance();
+		MultiFieldSortKeySerialization.configureMapOutputKey(job, 1,
+				new SortField(Text.class), new SortField(IntWritable.class, Order.DESCENDING));
+		Configuration conf = job.getConfiguration();
+
+		MultiFieldSortKey.SortComparator sorter = ReflectionUtils.newInstance(MultiFieldSortKey.SortComparator.class, conf);
+		MultiFieldSortKey.GroupingComparator grouping = ReflectionUtils.newInstance(MultiFieldSortKey.GroupingComparator.class, conf);
+		@SuppressWarnings("unchecked")
+		MultiFieldSortKey.KeyPartitioner<Text> partitioner = ReflectionUtils.newInstance(MultiFieldSortKey.KeyPartitioner.class, conf);
+
+		byte[] a1 = serialize(conf, new MultiFieldSortKey(new Text("a"), new IntWritable(1)));
+		byte[] a2 = serialize(conf, new MultiFieldSortKey(new Text("a"), new IntWritable(2)));
+		byte[] b1 = serialize(conf, new MultiFieldSortKey(new Text("b"), new IntWritable(1)));
+
+		assertTrue(sorter.compare(a2, 0, a2.length, a1, 0, a1.length) < 0);
+		assertTrue(sorter.compare(a1, 0, a1.length, b1, 0, b1.length) < 0);
+		assertThat(grouping.compare(a1, 0, a1.length, a2, 0, a2.length), equalTo(0));
+		assertTrue(grouping.compare(a2, 0, a2.length, b1, 0, b1.length) < 0);
+
+		assertThat(partitioner.getPartition(new MultiFieldSortKey(new Text("a"), new IntWritable(1)), null, 17),
+				equalTo(partitioner.getPartition(new MultiFieldSortKey(new Text("a"), new IntWritable(2)), null, 17)));
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		Job job = Job.getInstance();
+		MultiFieldSortKeySerialization.configureMapOutputKey(job, 2,
+				new SortField(Text.class, Order.DESCENDING), new SortField(LongWritable.class, Order.DESCENDING),
+				new SortField(Text.class));
+		Configuration conf = job.getConfiguration();
+
+		MultiFieldSortKey key = new MultiFieldSortKey(new Text("a\u0000b"), new LongWritable(-5), new Text("c"));
+		assertThat(deserialize(conf, serialize(conf, key)), equalTo(key));
+	}
+
+	@Test
+	public void annotationsConfigureKey() throws Exception {
+		Job job = Job.getInstance();
+		java.lang.reflect.Field field = AnnotatedJob.class.getDeclaredField("job");
+		new SorterAnnotationHandler().process(field.getAnnotation(Sorter.class), job, field);
+		new GroupingAnnotationHandler().process(field.getAnnotation(Grouping.class), job, field);
+
+		Configuration conf = job.getConfiguration();
+		assertEquals(MultiFieldSortKey.class, job.getMapOutputKeyClass());
+		assertEquals(MultiFieldSortKey.SortComparator.class, job.getSortComparator().getClass());
+		assertEquals(MultiFieldSortKey.KeyPartitioner.class, job.getPartitionerClass());
+		assertThat(MultiFieldSortKeySerialization.getGroupFieldCount(conf), equalTo(2));
+		assertThat(conf.getStrings(MultiFieldSortKeySerialization.CONF_KEY_FIELD_ORDERS),
+				equalTo(new String[] {"ASCENDING", "DESCENDING", "ASCENDING"}));
+	}
+
+	private static void assertRawComparatorsMatch(Configuration conf, List<MultiFieldSortKey> keys)
+			throws IOException {
+		MultiFieldSortKey.SortComparator sorter = ReflectionUtils.newInstance(MultiFieldSortKey.SortComparator.class, conf);
+		MultiFieldSortKey.GroupingComparator grouping = ReflectionUtils.newInstance(MultiFieldSortKey.GroupingComparator.class, conf);
+
+		List<byte[]> bytes = new ArrayList<>();
+		for (MultiFieldSortKey key : keys) {
+			bytes.add(serialize(conf, key));
+		}
+		for (int i = 0; i < keys.size(); i++) {
+			byte[] b1 = bytes.get(i);
+			for (int j = 0; j < keys.size(); j++) {
+				byte[] b2 = bytes.get(j);
+				assertThat(Integer.signum(sorter.compare(b1, 0, b1.length, b2, 0, b2.length)),
+						equalTo(Integer.signum(sorter.compare(keys.get(i), keys.get(j)))));
+				assertThat(Integer.signum(grouping.compare(b1, 0, b1.length, b2, 0, b2.length)),
+						equalTo(Integer.signum(grouping.compare(keys.get(i), keys.get(j)))));
+			}
+		}
+	}
+
+	private static List<MultiFieldSortKey> randomKeys(Random random) {
+		List<MultiFieldSortKey> keys = new ArrayList<>();
+		for (int i = 0; i < 150; i++) {
+			keys.add(new MultiFieldSortKey(new Text(WORDS[random.nextInt(WORDS.length)]),
+					new LongWritable(random.nextInt(5) - 2L), new Text(WORDS[random.nextInt(WORDS.length)]),
+					new IntWritable(random.nextBoolean()? Integer.MIN_VALUE : random.nextInt(3))));
+		}
+		return keys;
+	}
+
+	private static byte[] serialize(Configuration conf, MultiFieldSortKey key) throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		Serializer<MultiFieldSortKey> serializer = new MultiFieldSortKeySerialization(conf).getSerializer(MultiFieldSortKey.class);
+		serializer.open(out);
+		serializer.serialize(key);
+		return Arrays.copyOf(out.getData(), out.getLength());
+	}
+
+	private static MultiFieldSortKey deserialize(Configuration conf, byte[] bytes) throws IOException {
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(bytes, bytes.length);
+		Deserializer<MultiFieldSortKey> deserializer = new MultiFieldSortKeySerialization(conf).getDeserializer(MultiFieldSortKey.class);
+		deserializer.open(in);
+		return deserializer.deserialize(null);
+	}
+
+	private static final class AnnotatedJob {
+		@Sorter(fields = {Text.class, IntWritable.class, Text.class}, descending = {false, true})
+		@Grouping(fieldCount = 2)
+		Job job;
+	}
+}
@@ -0,0 +1,84 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PartitionSkewReportTest {
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void summaryCountersBeyondPartitionCap() {
+		Configuration conf = new Configuration();
+		PartitionSkewReport.enable(conf);
+		final Counters counters = new Counters();
+		counters.findCounter(TaskCounter.REDUCE_INPUT_RECORDS).setValue(500);
+
+		TaskInputOutputContext context = mock(TaskInputOutputContext.class);
+		when(context.getConfiguration()).thenReturn(conf);
+		when(context.getTaskAttemptID()).thenReturn(new TaskAttemptID("job", 1, TaskType.REDUCE, 100, 0));
+		when(context.getCounter(TaskCounter.REDUCE_INPUT_RECORDS))
+				.thenReturn(counters.findCounter(TaskCounter.REDUCE_INPUT_RECORDS));
+		when(context.getCounter(anyString(), anyString())).thenAnswer(new Answer<Counter>() {
+			@Override
+			public Counter answer(InvocationOnMock invocation) {
+				return counters.findCounter((String)invocation.getArguments()[0], (String)invocation.getArguments()[1]);
+			}
+		});
+		PartitionSkewReport.report(context);
+
+		// Partition 100 is past the default cap, so only the totals are counted
+		assertThat(counters.getGroup(PartitionSkewReport.COUNTER_GROUP).size(), equalTo(2));
+		assertThat(counters.findCounter(PartitionSkewReport.COUNTER_GROUP, PartitionSkewReport.COUNTER_RECORDS)
+				.getValue(), equalTo(500L));
+		assertThat(counters.findCounter(PartitionSkewReport.COUNTER_GROUP, PartitionSkewReport.COUNTER_PARTITIONS)
+				.getValue(), equalTo(1L));
+	}
+
+	@Test
+	public void summarizesPartitionSizes() {
+		Counters summary = PartitionSkewReport.summarize(new long[]{10, 40, 5, 25});
+		assertThat(value(summary, PartitionSkewReport.COUNTER_MAX), equalTo(40L));
+		assertThat(value(summary, PartitionSkewReport.COUNTER_MIN), equalTo(5L));
+		assertThat(value(summary, PartitionSkewReport.COUNTER_MEAN), equalTo(20L));
+		assertThat(value(summary, PartitionSkewReport.COUNTER_LARGEST), equalTo(1L));
+	}
+
+	private static long value(Counters counters, String name) {
+		return counters.findCounter(PartitionSkewReport.COUNTER_GROUP, name).getValue();
+	}
+}
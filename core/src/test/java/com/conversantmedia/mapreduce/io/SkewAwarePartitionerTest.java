@@ -0,0 +1,202 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.*;
+
+public class SkewAwarePartitionerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void spaceSavingCounterFindsHeavyHitters() {
+		SpaceSavingCounter<String> counter = new SpaceSavingCounter<>(10);
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			int r = random.nextInt(10);
+			counter.offer(r < 3? "hot" : r < 5? "warm" : "cold" + random.nextInt(1000));
+		}
+		assertThat(counter.getTotal(), equalTo(10000L));
+		assertThat(counter.heavyHitters(1000), equalTo(Arrays.asList("hot", "warm")));
+		assertTrue(counter.estimate("hot") - counter.error("hot") <= 3200);
+		assertTrue(counter.estimate("hot") >= 2800);
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void hotKeysSpreadAcrossPartitions() throws Exception {
+		// Half the records share one group key
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			lines.add(String.format(Locale.US, "%s,%d,value", i % 2 == 0? "hot" : "key" + i, i));
+		}
+		Collections.shuffle(lines, new Random(5));
+		FileUtils.writeLines(new File(folder.getRoot(), "input/part-0"), lines);
+
+		Job job = Job.getInstance();
+		job.getConfiguration().set("hadoop.tmp.dir", new File(folder.getRoot(), "tmp").getAbsolutePath());
+		FileInputFormat.addInputPath(job, new Path(new File(folder.getRoot(), "input").toURI()));
+		job.setMapperClass(CompositeSortKeyTest.TestMapper.class);
+		job.setNumReduceTasks(8);
+		CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, IntWritable.class);
+		SkewAwarePartitioner.enable(job, 1000);
+		assertTrue(PartitionSkewReport.isEnabled(job.getConfiguration()));
+
+		Path file = SkewAwarePartitioner.writeHotKeyFile(job);
+		assertThat(job.getCacheFiles()[0], equalTo(file.toUri()));
+
+		SkewAwarePartitioner<Text> partitioner = ReflectionUtils.newInstance(SkewAwarePartitioner.class, job.getConfiguration());
+		CompositeSortKey.GroupHashPartitioner<Text> hashPartitioner = new CompositeSortKey.GroupHashPartitioner<>();
+
+		Set<Integer> hotPartitions = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			hotPartitions.add(partitioner.getPartition(
+					new CompositeSortKey<>(new Text("hot"), new IntWritable(i)), null, 8));
+		}
+		// Half of the records is four reducers' fair share
+		assertThat(hotPartitions.size(), equalTo(4));
+
+		for (int i = 1; i < 2000; i += 2) {
+			CompositeSortKey key = new CompositeSortKey<>(new Text("key" + i), new IntWritable(i));
+			assertThat(partitioner.getPartition(key, null, 8), equalTo(hashPartitioner.getPartition(key, null, 8)));
+		}
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void hotKeysMatchedByBytes() throws Exception {
+		Job job = Job.getInstance();
+		CompositeSortKeySerialization.configureMapOutputKey(job, IdentityKey.class, IntWritable.class);
+		Path file = new Path(new File(folder.getRoot(), "hotkeys").toURI());
+		job.getConfiguration().set(SkewAwarePartitioner.CONF_KEY_HOTKEY_FILE, file.toString());
+
+		// The hot key counted is not the instance partitioned
+		SpaceSavingCounter<WritableComparable> counter = new SpaceSavingCounter<>(10);
+		IdentityKey hot = new IdentityKey(7);
+		for (int i = 0; i < 100; i++) {
+			counter.offer(i % 2 == 0? hot : new IdentityKey(i));
+		}
+		assertThat(SkewAwarePartitioner.writeHotKeys(job.getConfiguration(), file, counter, 8), equalTo(1));
+
+		SkewAwarePartitioner<Text> partitioner = ReflectionUtils.newInstance(SkewAwarePartitioner.class, job.getConfiguration());
+		Set<Integer> hotPartitions = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			hotPartitions.add(partitioner.getPartition(
+					new CompositeSortKey<>(new IdentityKey(7), new IntWritable(i)), null, 8));
+		}
+		assertThat(hotPartitions.size(), equalTo(4));
+	}
+
+	@Test
+	public void mergeJobReadsJobOutput() throws Exception {
+		Job job = Job.getInstance();
+		job.setJobName("skewed");
+		job.setNumReduceTasks(3);
+		job.setMapperClass(CompositeSortKeyTest.TestMapper.class);
+		job.getConfiguration().set("skewed.only", "true");
+		job.getConfiguration().set("tmpjars", "file:/lib/merge-deps.jar");
+		job.setJar("/lib/skewed.jar");
+		FileOutputFormat.setCompressOutput(job, true);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(LongWritable.class);
+		FileOutputFormat.setOutputPath(job, new Path("/out"));
+		CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, IntWritable.class);
+		SkewAwarePartitioner.enable(job, 100);
+		assertNull(SkewAwarePartitioner.newMergeJob(job, new Configuration()));
+
+		SkewAwarePartitioner.setMergeReducer(job, Reducer.class);
+		Job merge = SkewAwarePartitioner.newMergeJob(job, new Configuration());
+		assertThat(merge.getJobName(), equalTo("skewed-merge"));
+		assertEquals(SequenceFileInputFormat.class, merge.getInputFormatClass());
+		assertEquals(Reducer.class, merge.getReducerClass());
+		assertEquals(Text.class, merge.getMapOutputKeyClass());
+		assertEquals(LongWritable.class, merge.getMapOutputValueClass());
+		assertThat(merge.getNumReduceTasks(), equalTo(3));
+		assertThat(FileInputFormat.getInputPaths(merge)[0].toUri().getPath(), equalTo("/out"));
+		assertThat(FileOutputFormat.getOutputPath(merge).toUri().getPath(), equalTo("/out-merged"));
+		assertNull(merge.getConfiguration().get(MRJobConfig.GROUP_COMPARATOR_CLASS));
+		assertFalse(SkewAwarePartitioner.isEnabled(merge.getConfiguration()));
+		assertEquals(SequenceFileOutputFormat.class, merge.getOutputFormatClass());
+		assertEquals(Text.class, merge.getOutputKeyClass());
+		assertEquals(LongWritable.class, merge.getOutputValueClass());
+		assertTrue(FileOutputFormat.getCompressOutput(merge));
+		assertEquals(Mapper.class, merge.getMapperClass());
+		assertNull(merge.getConfiguration().get("skewed.only"));
+		assertThat(merge.getJar(), equalTo("/lib/skewed.jar"));
+		assertThat(merge.getConfiguration().get("tmpjars"), equalTo("file:/lib/merge-deps.jar"));
+	}
+
+	/**
+	 * A key without value-based equality.
+	 */
+	public static class IdentityKey extends IntWritable {
+
+		public IdentityKey() {}
+
+		IdentityKey(int value) {
+			super(value);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return this == o;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.conversantmedia.mapreduce.io;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.conversantmedia.mapreduce.tool.AnnotatedDelegatingMapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.annotation.Resource;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.*;
+
+public class TotalOrderGroupPartitionerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void partitionsInGroupKeyOrder() throws Exception {
+		// Two input files of unordered group keys
+		Random random = new Random(5);
+		for (int f = 0; f < 2; f++) {
+			List<String> lines = new ArrayList<>();
+			for (int i = f; i < 1000; i += 2) {
+				lines.add(String.format(Locale.US, "key%04d,%d,value", i, i));
+			}
+			Collections.shuffle(lines, random);
+			FileUtils.writeLines(new File(folder.getRoot(), "input/part-" + f), lines);
+		}
+
+		Job job = Job.getInstance();
+		job.getConfiguration().set("hadoop.tmp.dir", new File(folder.getRoot(), "tmp").getAbsolutePath());
+		FileInputFormat.addInputPath(job, new Path(new File(folder.getRoot(), "input").toURI()));
+		job.setMapperClass(CompositeSortKeyTest.TestMapper.class);
+		job.setNumReduceTasks(4);
+		CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, IntWritable.class);
+		TotalOrderGroupPartitioner.enable(job, 400);
+
+		Path file = TotalOrderGroupPartitioner.writePartitionFile(job);
+		assertTrue(file.getFileSystem(job.getConfiguration()).exists(file));
+		assertThat(job.getCacheFiles()[0], equalTo(file.toUri()));
+
+		Configuration conf = job.getConfiguration();
+		TotalOrderGroupPartitioner<Text> partitioner = ReflectionUtils.newInstance(TotalOrderGroupPartitioner.class, conf);
+
+		int[] counts = new int[4];
+		int previous = 0;
+		for (int i = 0; i < 1000; i++) {
+			CompositeSortKey<Text, IntWritable> key = new CompositeSortKey<>(
+					new Text(String.format(Locale.US, "key%04d", i)), new IntWritable(i));
+			int partition = partitioner.getPartition(key, null, 4);
+			assertTrue("Partitions out of order at " + i, partition >= previous);
+			previous = partition;
+			counts[partition]++;
+		}
+		for (int count : counts) {
+			assertTrue("Uneven partitions", count > 150 && count < 350);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void mapperWithResourcesNotSampled() throws Exception {
+		FileUtils.writeLines(new File(folder.getRoot(), "input/part-0"), Collections.singletonList("key,1,value"));
+		Job job = Job.getInstance();
+		FileInputFormat.addInputPath(job, new Path(new File(folder.getRoot(), "input").toURI()));
+		job.setMapperClass(AnnotatedDelegatingMapper.class);
+		job.getConfiguration().setClass(AnnotatedDelegatingMapper.CONFKEY_DELEGATE_MAPPER_CLASS,
+				ResourceMapper.class, Mapper.class);
+		CompositeSortKeySerialization.configureMapOutputKey(job, Text.class, IntWritable.class);
+		TotalOrderGroupPartitioner.enable(job, 10);
+		TotalOrderGroupPartitioner.writePartitionFile(job);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void tooFewPartitions() throws Exception {
+		List samples = new ArrayList();
+		for (int i = 0; i < 10; i++) {
+			samples.add(new Text("key" + i));
+		}
+		Configuration conf = new Configuration();
+		conf.set(CompositeSortKeySerialization.CONF_KEY_GROUPKEY_CLASS, Text.class.getName());
+		Path file = new Path(new File(folder.getRoot(), "splits.seq").toURI());
+		assertThat(TotalOrderGroupPartitioner.writeSplitPoints(conf, file, samples, 5), equalTo(4));
+		conf.set(TotalOrderGroupPartitioner.CONF_KEY_PARTITION_FILE, file.toString());
+
+		TotalOrderGroupPartitioner<Text> partitioner = ReflectionUtils.newInstance(TotalOrderGroupPartitioner.class, conf);
+		partitioner.getPartition(new CompositeSortKey<>(new Text("key3"), new IntWritable(0)), null, 2);
+	}
+
+	public static class ResourceMapper extends CompositeSortKeyTest.TestMapper {
+
+		@Resource
+		private String lookup;
+	}
+}
@@ -0,0 +1,239 @@
+package com.conversantmedia.mapreduce.io.avro;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.avro.Schema;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.avro.reflect.ReflectDatumWriter;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AvroMultiSerializationTest {
+
+	private Configuration conf;
+
+	@Before
+	public void setup() throws IOException {
+		Job job = Job.getInstance(new Configuration());
+		MultiSchemaAvroSerialization.registerSchemas(job, Unused.SCHEMA$, Visit.SCHEMA$, Purchase.SCHEMA$);
+		conf = job.getConfiguration();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		roundTrip(conf, conf);
+	}
+
+	@Test
+	public void testWireFormats() throws IOException {
+		assertThat(MultiSchemaAvroSerialization.getWireFormat(conf),
+				equalTo(MultiSchemaAvroSerialization.WIRE_FORMAT_BYTE));
+		for (int format : new int[] { MultiSchemaAvroSerialization.WIRE_FORMAT_VARINT,
+				MultiSchemaAvroSerialization.WIRE_FORMAT_VARINT_FINGERPRINT }) {
+			Job job = Job.getInstance(conf);
+			MultiSchemaAvroSerialization.setWireFormat(job, format);
+			roundTrip(job.getConfiguration(), job.getConfiguration());
+		}
+	}
+
+	@Test
+	public void testLargeRegistry() throws IOException {
+		Job job = Job.getInstance(new Configuration());
+		MultiSchemaAvroSerialization.registerSchemas(job, placeholders(300, Visit.SCHEMA$, Purchase.SCHEMA$));
+		assertThat(MultiSchemaAvroSerialization.getWireFormat(job.getConfiguration()),
+				equalTo(MultiSchemaAvroSerialization.WIRE_FORMAT_VARINT));
+		roundTrip(job.getConfiguration(), job.getConfiguration());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testLargeRegistryByteFormat() throws IOException {
+		Job job = Job.getInstance(new Configuration());
+		MultiSchemaAvroSerialization.setWireFormat(job, MultiSchemaAvroSerialization.WIRE_FORMAT_BYTE);
+		MultiSchemaAvroSerialization.registerSchemas(job, placeholders(300, Visit.SCHEMA$, Purchase.SCHEMA$));
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testFingerprintMismatch() throws IOException {
+		Job writer = Job.getInstance(new Configuration());
+		MultiSchemaAvroSerialization.setWireFormat(writer, MultiSchemaAvroSerialization.WIRE_FORMAT_VARINT_FINGERPRINT);
+		MultiSchemaAvroSerialization.registerSchemas(writer, Visit.SCHEMA$, Purchase.SCHEMA$);
+		Job reader = Job.getInstance(new Configuration());
+		MultiSchemaAvroSerialization.setWireFormat(reader, MultiSchemaAvroSerialization.WIRE_FORMAT_VARINT_FINGERPRINT);
+		MultiSchemaAvroSerialization.registerSchemas(reader, Purchase.SCHEMA$, Visit.SCHEMA$);
+		roundTrip(writer.getConfiguration(), reader.getConfiguration());
+	}
+
+	@Test
+	public void testSpecificRecords() throws IOException {
+		Job job = Job.getInstance(new Configuration());
+		MultiSchemaAvroSerialization.registerSchemas(job, Visit.SCHEMA$, Refund.SCHEMA$);
+		assertThat(MultiSchemaAvroSerialization.createDatumWriter(Refund.class), instanceOf(SpecificDatumWriter.class));
+		assertThat(MultiSchemaAvroSerialization.createDatumWriter(Visit.class), instanceOf(ReflectDatumWriter.class));
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		AvroMultiSerializer<Object> serializer = new AvroMultiSerializer<>(job.getConfiguration());
+		serializer.open(out);
+		serializer.serialize(new AvroMultiWrapper<Object>(new Refund("a", 10)));
+		serializer.serialize(new AvroMultiWrapper<Object>(new Visit("b", 2)));
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		AvroMultiDeserializer<Object> deserializer = new AvroMultiDeserializer<>(job.getConfiguration());
+		deserializer.open(in);
+		Refund refund = (Refund)deserializer.deserialize(null).datum();
+		assertThat(refund.user.toString(), equalTo("a"));
+		assertThat(refund.cents, equalTo(10L));
+		assertThat(deserializer.deserialize(null).datum().toString(), equalTo("Visit[b, 2]"));
+	}
+
+	@Test
+	public void testComparator() throws IOException {
+		Object[] records = { new Purchase("a", 1.0), new Visit("b", 0), new Visit("a", 2), new Visit("a", 1) };
+		for (int format : new int[] { MultiSchemaAvroSerialization.WIRE_FORMAT_BYTE,
+				MultiSchemaAvroSerialization.WIRE_FORMAT_VARINT_FINGERPRINT }) {
+			Job job = Job.getInstance(conf);
+			MultiSchemaAvroSerialization.setWireFormat(job, format);
+			AvroMultiWrapperComparator<Object> comparator = new AvroMultiWrapperComparator<>();
+			comparator.setConf(job.getConfiguration());
+			AvroMultiWrapperComparator<Object> reversed = new AvroMultiWrapperComparator<Object>() {
+				@Override
+				public int compare(AvroMultiWrapper<Object> o1, AvroMultiWrapper<Object> o2) {
+					return super.compare(o2, o1);
+				}
+			};
+			reversed.setConf(job.getConfiguration());
+
+			byte[][] serialized = new byte[records.length][];
+			AvroMultiSerializer<Object> serializer = new AvroMultiSerializer<>(job.getConfiguration());
+			for (int i = 0; i < records.length; i++) {
+				DataOutputBuffer out = new DataOutputBuffer();
+				out.write(new byte[] { 7, 7 }); // non-zero offset
+				serializer.open(out);
+				serializer.serialize(new AvroMultiWrapper<>(records[i]));
+				serialized[i] = Arrays.copyOf(out.getData(), out.getLength());
+			}
+
+			for (int i = 0; i < records.length; i++) {
+				for (int j = 0; j < records.length; j++) {
+					// Records are listed in descending order
+					int expected = Integer.compare(j, i);
+					assertThat(Integer.signum(comparator.compare(serialized[i], 2, serialized[i].length - 2,
+							serialized[j], 2, serialized[j].length - 2)), equalTo(expected));
+					assertThat(Integer.signum(reversed.compare(serialized[i], 2, serialized[i].length - 2,
+							serialized[j], 2, serialized[j].length - 2)), equalTo(-expected));
+					assertThat(Integer.signum(comparator.compare(new AvroMultiWrapper<>(records[i]),
+							new AvroMultiWrapper<>(records[j]))), equalTo(expected));
+				}
+			}
+		}
+	}
+
+	private static Schema[] placeholders(int count, Schema... last) {
+		Schema[] schemas = new Schema[count];
+		for (int i = 0; i < count - last.length; i++) {
+			schemas[i] = Schema.createRecord("Placeholder" + i, null, "com.example", false);
+		}
+		System.arraycopy(last, 0, schemas, count - last.length, last.length);
+		return schemas;
+	}
+
+	private void roundTrip(Configuration writeConf, Configuration readConf) throws IOException {
+		Object[] records = { new Visit("a", 1), new Purchase("b", 2.5), new Visit("c", 3), new Visit("d", 4) };
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		AvroMultiSerializer<Object> serializer = new AvroMultiSerializer<>(writeConf);
+		serializer.open(out);
+		for (Object record : records) {
+			serializer.serialize(new AvroMultiWrapper<>(record));
+		}
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		AvroMultiDeserializer<Object> deserializer = new AvroMultiDeserializer<>(readConf);
+		deserializer.open(in);
+		for (Object record : records) {
+			AvroMultiWrapper<Object> wrapper = deserializer.deserialize(null);
+			assertThat(wrapper.datum(), instanceOf(record.getClass()));
+			assertThat(wrapper.datum().toString(), equalTo(record.toString()));
+		}
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testUnregisteredClass() throws IOException {
+		AvroMultiSerializer<Object> serializer = new AvroMultiSerializer<>(conf);
+		serializer.open(new DataOutputBuffer());
+		serializer.serialize(new AvroMultiWrapper<Object>("unregistered"));
+	}
+}
+
+class Unused {
+	public static final Schema SCHEMA$ = ReflectData.get().getSchema(Unused.class);
+	public int id;
+}
+
+class Visit {
+	public static final Schema SCHEMA$ = ReflectData.get().getSchema(Visit.class);
+	public String user;
+	public long time;
+
+	public Visit() {}
+
+	Visit(String user, long time) {
+		this.user = user;
+		this.time = time;
+	}
+
+	@Override
+	public String toString() {
+		return "Visit[" + user + ", " + time + "]";
+	}
+}
+
+class Purchase {
+	public static final Schema SCHEMA$ = ReflectData.get().getSchema(Purchase.class);
+	public String user;
+	public double amount;
+
+	public Purchase() {}
+
+	Purchase(String user, double amount) {
+		this.user = user;
+		this.amount = amount;
+	}
+
+	@Override
+	public String toString() {
+		return "Purchase[" + user + ", " + amount + "]";
+	}
+}
@@ -0,0 +1,63 @@
+package com.conversantmedia.mapreduce.io.avro;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.avro.Schema;
+import org.apache.avro.specific.SpecificRecordBase;
+
+/**
+ * A specific record, as generated by the Avro compiler.
+ */
+public class Refund extends SpecificRecordBase {
+	public static final Schema SCHEMA$ = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"Refund\","
+			+ "\"namespace\":\"com.conversantmedia.mapreduce.io.avro\",\"fields\":["
+			+ "{\"name\":\"user\",\"type\":\"string\"},{\"name\":\"cents\",\"type\":\"long\"}]}");
+	public CharSequence user;
+	public long cents;
+
+	public Refund() {}
+
+	public Refund(CharSequence user, long cents) {
+		this.user = user;
+		this.cents = cents;
+	}
+
+	@Override
+	public Schema getSchema() {
+		return SCHEMA$;
+	}
+
+	@Override
+	public Object get(int field) {
+		return field == 0? user : cents;
+	}
+
+	@Override
+	public void put(int field, Object value) {
+		if (field == 0) {
+			user = (CharSequence)value;
+		}
+		else {
+			cents = (Long)value;
+		}
+	}
+}
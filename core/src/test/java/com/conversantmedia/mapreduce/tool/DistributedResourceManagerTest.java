@@ -22,16 +22,37 @@ package com.conversantmedia.mapreduce.tool;
 
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.annotation.Resource;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.counters.GenericCounter;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.conversantmedia.mapreduce.io.MappedFile;
 import com.conversantmedia.mapreduce.tool.DistributedResourceManager;
 
 /**
@@ -40,6 +61,9 @@ import com.conversantmedia.mapreduce.tool.DistributedResourceManager;
  */
 public class DistributedResourceManagerTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void testSetFieldValue() {
 
@@ -77,6 +101,108 @@ public class DistributedResourceManagerTest {
 //		System.out.println(ToStringBuilder.reflectionToString(bean));
 	}
 
+	@Test
+	public void testMappedResources() throws IOException, ToolException {
+		File file = folder.newFile("lookup.bin");
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(new byte[] { 1, 2, 3, 4 });
+		}
+
+		Configuration conf = new Configuration(false);
+		conf.set(MRJobConfig.CACHE_LOCALFILES, new Path(file.getAbsolutePath()).toString());
+		String resourceId = Path.class.getName() + DistributedResourceManager.VALUE_SEP + file.getName();
+		conf.set(DistributedResourceManager.CONFIGKEYBASE_RESOURCE + "buffer", resourceId);
+		conf.set(DistributedResourceManager.CONFIGKEYBASE_RESOURCE + "view", resourceId);
+		conf.set(DistributedResourceManager.CONFIGKEYBASE_RESOURCE + "mapped", resourceId);
+
+		MappedBean bean = new MappedBean();
+		DistributedResourceManager.initializeResources(bean, conf);
+		assertThat(bean.buffer.getInt(0), equalTo(0x01020304));
+		assertThat(bean.view.getInt(0), equalTo(0x01020304));
+		assertThat(bean.mapped.length(), equalTo(4L));
+		assertThat(bean.mapped.getInt(0), equalTo(0x01020304));
+	}
+
+	@Test
+	public void testSharedResources() throws IOException, ToolException {
+		Configuration conf = new Configuration(false);
+		ArrayList<String> list = new ArrayList<>();
+		list.add("a");
+		File file = folder.newFile("list" + ResourceCodecs.suffix(conf));
+		ResourceCodecs.write(conf, new ResourceCodecs.JavaCodec(), list, file);
+
+		conf.set(MRJobConfig.CACHE_LOCALFILES, new Path(file.getAbsolutePath()).toString());
+		conf.set(DistributedResourceManager.CONFIGKEYBASE_RESOURCE + "list", ArrayList.class.getName()
+				+ DistributedResourceManager.VALUE_SEP + file.getName());
+
+		ListBean first = new ListBean();
+		ListBean second = new ListBean();
+		DistributedResourceManager.initializeResources(first, conf);
+		DistributedResourceManager.initializeResources(second, conf);
+		assertThat(second.list, equalTo(first.list));
+		assertThat(second.list, not(sameInstance(first.list)));
+
+		conf.setBoolean(DistributedResourceManager.CONFIGKEYBASE_SHARED + "list", true);
+		DistributedResourceManager.initializeResources(first, conf);
+		DistributedResourceManager.initializeResources(second, conf);
+		assertThat(second.list, sameInstance(first.list));
+
+		// A new version of the file is decoded again
+		file.setLastModified(file.lastModified() - 10000);
+		DistributedResourceManager.initializeResources(second, conf);
+		assertThat(second.list, equalTo(first.list));
+		assertThat(second.list, not(sameInstance(first.list)));
+	}
+
+	@Test
+	public void testLazyResources() throws IOException, ToolException {
+		Configuration conf = new Configuration(false);
+		ArrayList<String> list = new ArrayList<>();
+		list.add("a");
+		File file = folder.newFile("lazy" + ResourceCodecs.suffix(conf));
+		ResourceCodecs.write(conf, new ResourceCodecs.JavaCodec(), list, file);
+
+		conf.set(MRJobConfig.CACHE_LOCALFILES, new Path(file.getAbsolutePath()).toString());
+		conf.set(DistributedResourceManager.CONFIGKEYBASE_RESOURCE + "list", ArrayList.class.getName()
+				+ DistributedResourceManager.VALUE_SEP + file.getName());
+		conf.set(DistributedResourceManager.CONFIGKEYBASE_RESOURCE + "count", Integer.class.getName()
+				+ DistributedResourceManager.VALUE_SEP + "42");
+
+		TaskAttemptContext context = mock(TaskAttemptContext.class);
+		when(context.getConfiguration()).thenReturn(conf);
+		when(context.getCounter(DistributedResourceManager.COUNTER_GROUP, "list")).thenReturn(new GenericCounter());
+		when(context.getCounter(DistributedResourceManager.COUNTER_GROUP, "count")).thenReturn(new GenericCounter());
+
+		LazyBean bean = new LazyBean();
+		DistributedResourceManager.initializeResources(bean, context);
+		assertThat(bean.list.isLoaded(), equalTo(false));
+		assertThat(bean.count.get(), equalTo(42));
+
+		assertThat(bean.list.get(), equalTo((List<String>)list));
+		assertThat(bean.list.isLoaded(), equalTo(true));
+		assertThat(bean.list.get(), sameInstance(bean.list.get()));
+	}
+
+	private static class LazyBean {
+		@Resource
+		private LazyResource<List<String>> list;
+		@Resource
+		private LazyResource<Integer> count;
+	}
+
+	private static class ListBean {
+		@Resource
+		private List<String> list;
+	}
+
+	private static class MappedBean {
+		@Resource
+		private MappedByteBuffer buffer;
+		@Resource
+		private ByteBuffer view;
+		@Resource
+		private MappedFile mapped;
+	}
 
 	@SuppressWarnings("unused")
 	private static class TargetBean {
@@ -0,0 +1,143 @@
+package com.conversantmedia.mapreduce.tool;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.conversantmedia.mapreduce.tool.ResourceCodecs.JavaCodec;
+import com.conversantmedia.mapreduce.tool.ResourceCodecs.WritableCodec;
+
+public class ResourceCodecsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSelection() {
+		Configuration conf = new Configuration(false);
+		assertThat(ResourceCodecs.forType(conf, MapWritable.class), instanceOf(WritableCodec.class));
+		assertThat(ResourceCodecs.forType(conf, HashMap.class), instanceOf(JavaCodec.class));
+		assertThat(ResourceCodecs.forType(conf, Object.class), nullValue());
+
+		ResourceCodecs.register(conf, StringCodec.class);
+		assertThat(ResourceCodecs.forType(conf, String.class), instanceOf(StringCodec.class));
+		assertThat(ResourceCodecs.forType(conf, HashMap.class), instanceOf(JavaCodec.class));
+	}
+
+	@Test
+	public void testWritableRoundTrip() throws IOException, ClassNotFoundException {
+		Configuration conf = new Configuration(false);
+		MapWritable map = new MapWritable();
+		for (int i = 0; i < 1000; i++) {
+			map.put(new Text("key-" + i), new IntWritable(i));
+		}
+		assertThat(roundTrip(conf, map), equalTo((Object)map));
+	}
+
+	@Test
+	public void testCompressedRoundTrip() throws IOException, ClassNotFoundException {
+		Configuration conf = new Configuration(false);
+		ResourceCodecs.setCompression(conf, GzipCodec.class);
+		assertThat(ResourceCodecs.suffix(conf), equalTo(".ser.gz"));
+
+		HashMap<String, Integer> map = new HashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			map.put("key-" + i, i);
+		}
+		assertThat(roundTrip(conf, map), equalTo((Object)map));
+	}
+
+	@Test
+	public void testInjection() throws IOException, ToolException {
+		Configuration conf = new Configuration(false);
+		ResourceCodecs.setCompression(conf, GzipCodec.class);
+		MapWritable map = new MapWritable();
+		map.put(new Text("a"), new IntWritable(1));
+		File file = folder.newFile("map" + ResourceCodecs.suffix(conf));
+		ResourceCodecs.write(conf, new WritableCodec(), map, file);
+
+		conf.set(MRJobConfig.CACHE_LOCALFILES, new Path(file.getAbsolutePath()).toString());
+		conf.set(DistributedResourceManager.CONFIGKEYBASE_RESOURCE + "map", MapWritable.class.getName()
+				+ DistributedResourceManager.VALUE_SEP + file.getName()
+				+ DistributedResourceManager.VALUE_SEP + WritableCodec.class.getName());
+
+		MapBean bean = new MapBean();
+		DistributedResourceManager.initializeResources(bean, conf);
+		assertThat(bean.map, equalTo(map));
+	}
+
+	private Object roundTrip(Configuration conf, Object value) throws IOException, ClassNotFoundException {
+		ResourceCodec codec = ResourceCodecs.forType(conf, value.getClass());
+		File file = folder.newFile("value" + ResourceCodecs.suffix(conf));
+		ResourceCodecs.write(conf, codec, value, file);
+		assertThat(file.getName(), endsWith(ResourceCodecs.suffix(conf)));
+		codec = ResourceCodecs.newCodec(conf, codec.getClass().getName());
+		return ResourceCodecs.read(conf, codec, value.getClass(), file);
+	}
+
+	private static class MapBean {
+		@Resource
+		private MapWritable map;
+	}
+
+	public static class StringCodec implements ResourceCodec {
+
+		@Override
+		public boolean accepts(Class<?> type) {
+			return type == String.class;
+		}
+
+		@Override
+		public void encode(Object value, OutputStream out) throws IOException {
+			out.write(((String)value).getBytes("UTF-8"));
+		}
+
+		@Override
+		public Object decode(Class<?> type, InputStream in) throws IOException {
+			return IOUtils.toString(in, "UTF-8");
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.conversantmedia.mapreduce.tool.annotation.handler;
+
+/*
+ * #%L
+ * Mara Core framework
+ * ~~
+ * Copyright (C) 2015 Conversant
+ * ~~
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import static org.mockito.Mockito.mock;
+
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Test;
+
+import com.conversantmedia.mapreduce.tool.annotation.Partitioner;
+
+public class PartitionerAnnotationHandlerTest {
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testTotalOrderAndSkewAwareRejected() throws Exception {
+		new PartitionerAnnotationHandler().process(getClass().getDeclaredField("partitioner")
+				.getAnnotation(Partitioner.class), mock(Job.class), this);
+	}
+
+	@Partitioner(totalOrder=true, skewAware=true)
+	private org.apache.hadoop.mapreduce.Partitioner<?, ?> partitioner;
+}